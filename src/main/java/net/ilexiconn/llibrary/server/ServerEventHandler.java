@@ -2,55 +2,30 @@ package net.ilexiconn.llibrary.server;
 
 import cpw.mods.fml.common.eventhandler.SubscribeEvent;
 import cpw.mods.fml.common.gameevent.TickEvent;
-import net.ilexiconn.llibrary.LLibrary;
-import net.ilexiconn.llibrary.server.entity.EntityProperties;
 import net.ilexiconn.llibrary.server.entity.EntityPropertiesHandler;
 import net.ilexiconn.llibrary.server.entity.PropertiesTracker;
+import net.ilexiconn.llibrary.server.entity.TrackerCleanupWorldAccess;
+import net.ilexiconn.llibrary.server.entity.block.BlockEntityScheduler;
+import net.ilexiconn.llibrary.server.network.MessageBatchHandler;
 import net.ilexiconn.llibrary.server.network.PropertiesMessage;
 import net.ilexiconn.llibrary.server.world.WorldDataHandler;
-import net.minecraft.entity.Entity;
 import net.minecraft.entity.player.EntityPlayerMP;
-import net.minecraft.world.WorldServer;
-import net.minecraftforge.common.DimensionManager;
 import net.minecraftforge.event.entity.EntityEvent;
 import net.minecraftforge.event.entity.EntityJoinWorldEvent;
 import net.minecraftforge.event.entity.living.LivingEvent;
 import net.minecraftforge.event.entity.player.PlayerEvent;
 import net.minecraftforge.event.world.WorldEvent;
 
-import java.lang.reflect.Constructor;
-import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 
 public enum ServerEventHandler {
     INSTANCE;
 
-    private int updateTimer;
+    private final TrackerCleanupWorldAccess trackerCleanup = new TrackerCleanupWorldAccess();
 
     @SubscribeEvent
     public void onEntityConstructing(EntityEvent.EntityConstructing event) {
-        boolean cached = EntityPropertiesHandler.INSTANCE.hasEntityInCache(event.entity.getClass());
-        List<String> entityPropertiesIDCache = !cached ? new ArrayList<>() : null;
-        EntityPropertiesHandler.INSTANCE.getRegisteredProperties().filter(propEntry -> propEntry.getKey().isAssignableFrom(event.entity.getClass())).forEach(propEntry -> {
-            for (Class<? extends EntityProperties> propClass : propEntry.getValue()) {
-                try {
-                    Constructor<? extends EntityProperties> constructor = propClass.getConstructor();
-                    EntityProperties prop = constructor.newInstance();
-                    String propID = prop.getID();
-                    event.entity.registerExtendedProperties(propID, prop);
-                    if (!cached) {
-                        entityPropertiesIDCache.add(propID);
-                    }
-                } catch (Exception ex) {
-                    ex.printStackTrace();
-                }
-            }
-        });
-        if (!cached) {
-            EntityPropertiesHandler.INSTANCE.addEntityToCache(event.entity.getClass(), entityPropertiesIDCache);
-        }
+        EntityPropertiesHandler.INSTANCE.constructProperties(event.entity);
     }
 
     @SubscribeEvent
@@ -61,21 +36,16 @@ public enum ServerEventHandler {
         EntityPlayerMP player = (EntityPlayerMP) event.entity;
         List<PropertiesTracker<?>> trackers = EntityPropertiesHandler.INSTANCE.getEntityTrackers(player);
         if (trackers != null && trackers.size() > 0) {
-            boolean hasPlayer = false;
-            for (PropertiesTracker tracker : trackers) {
-                if (hasPlayer = tracker.getEntity() == player) {
-                    break;
-                }
-            }
-            if (!hasPlayer) {
+            if (!EntityPropertiesHandler.INSTANCE.hasTracker(player, player)) {
                 EntityPropertiesHandler.INSTANCE.addTracker(player, player);
             }
-            for (PropertiesTracker<?> tracker : trackers) {
+            for (int i = 0; i < trackers.size(); i++) {
+                PropertiesTracker<?> tracker = trackers.get(i);
                 tracker.updateTracker();
                 if (tracker.isTrackerReady()) {
                     tracker.onSync();
-                    PropertiesMessage message = new PropertiesMessage(tracker.getProperties(), tracker.getEntity());
-                    LLibrary.NETWORK_WRAPPER.sendTo(message, player);
+                    PropertiesMessage message = new PropertiesMessage(tracker, player);
+                    MessageBatchHandler.INSTANCE.sendTo(message, player);
                 }
             }
         }
@@ -105,32 +75,18 @@ public enum ServerEventHandler {
 
     @SubscribeEvent
     public void onServerTickEvent(TickEvent.ServerTickEvent event) {
-        if (event.phase == TickEvent.Phase.END) {
-            this.updateTimer++;
-            if (this.updateTimer > 20) {
-                this.updateTimer = 0;
-                Iterator<Map.Entry<EntityPlayerMP, List<PropertiesTracker<?>>>> iterator = EntityPropertiesHandler.INSTANCE.getTrackerIterator();
-                while (iterator.hasNext()) {
-                    Map.Entry<EntityPlayerMP, List<PropertiesTracker<?>>> trackerEntry = iterator.next();
-                    EntityPlayerMP player = trackerEntry.getKey();
-                    WorldServer playerWorld = DimensionManager.getWorld(player.dimension);
-                    if (player == null || player.isDead || playerWorld == null || !playerWorld.loadedEntityList.contains(player)) {
-                        iterator.remove();
-                        trackerEntry.getValue().forEach(PropertiesTracker::removeTracker);
-                    } else {
-                        Iterator<PropertiesTracker<?>> it = trackerEntry.getValue().iterator();
-                        while (it.hasNext()) {
-                            PropertiesTracker tracker = it.next();
-                            Entity entity = tracker.getEntity();
-                            WorldServer entityWorld = DimensionManager.getWorld(entity.dimension);
-                            if (entity == null || entity.isDead || entityWorld == null || !entityWorld.loadedEntityList.contains(entity)) {
-                                it.remove();
-                                tracker.removeTracker();
-                            }
-                        }
-                    }
-                }
-            }
+        if (event.phase == TickEvent.Phase.START) {
+            EntityPropertiesHandler.INSTANCE.processResyncRequests();
+            BlockEntityScheduler.INSTANCE.startTick();
+        } else if (event.phase == TickEvent.Phase.END) {
+            MessageBatchHandler.INSTANCE.flush();
+        }
+    }
+
+    @SubscribeEvent
+    public void onPlayerLoggedOut(cpw.mods.fml.common.gameevent.PlayerEvent.PlayerLoggedOutEvent event) {
+        if (event.player instanceof EntityPlayerMP) {
+            EntityPropertiesHandler.INSTANCE.removePlayer((EntityPlayerMP) event.player);
         }
     }
 
@@ -138,6 +94,15 @@ public enum ServerEventHandler {
     public void onWorldLoad(WorldEvent.Load event) {
         if (!event.world.isRemote) {
             WorldDataHandler.INSTANCE.loadWorldData(event.world.getSaveHandler(), event.world);
+            event.world.addWorldAccess(this.trackerCleanup);
+        }
+    }
+
+    @SubscribeEvent
+    public void onWorldUnload(WorldEvent.Unload event) {
+        if (!event.world.isRemote) {
+            EntityPropertiesHandler.INSTANCE.removeWorld(event.world);
+            WorldDataHandler.INSTANCE.unloadWorldData(event.world);
         }
     }
 
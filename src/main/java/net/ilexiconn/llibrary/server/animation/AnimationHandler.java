@@ -1,8 +1,8 @@
 package net.ilexiconn.llibrary.server.animation;
 
-import net.ilexiconn.llibrary.LLibrary;
 import net.ilexiconn.llibrary.server.event.AnimationEvent;
 import net.ilexiconn.llibrary.server.network.AnimationMessage;
+import net.ilexiconn.llibrary.server.network.MessageBatchHandler;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.entity.player.EntityPlayerMP;
@@ -30,7 +30,7 @@ public enum AnimationHandler {
         }
         entity.setAnimation(animation);
         for (EntityPlayer trackingPlayer : ((WorldServer) entity.worldObj).getEntityTracker().getTrackingPlayers(entity)) {
-            LLibrary.NETWORK_WRAPPER.sendTo(new AnimationMessage(entity.getEntityId(), ArrayUtils.indexOf(entity.getAnimations(), animation)), (EntityPlayerMP) trackingPlayer);
+            MessageBatchHandler.INSTANCE.sendTo(new AnimationMessage(entity.getEntityId(), ArrayUtils.indexOf(entity.getAnimations(), animation)), (EntityPlayerMP) trackingPlayer);
         }
     }
 
@@ -24,6 +24,14 @@ public class LLibraryConfig {
     private boolean tabsAlwaysVisible = false;
     @NBTProperty
     private boolean tabsLeftSide = true;
+    @NBTProperty
+    private int propertiesResyncInterval = 20;
+    @NBTProperty
+    private int blockEntityTrackingRange = 0;
+    @NBTProperty
+    private int blockEntityTrackingBudget = 5000;
+    @NBTProperty
+    private boolean parallelWorldDataLoading = true;
 
     public int getPrimaryColor() {
         return colorMode.getPrimaryColor();
@@ -110,6 +118,38 @@ public class LLibraryConfig {
         this.tabsLeftSide = tabsLeftSide;
     }
 
+    public int getPropertiesResyncInterval() {
+        return propertiesResyncInterval;
+    }
+
+    public void setPropertiesResyncInterval(int propertiesResyncInterval) {
+        this.propertiesResyncInterval = propertiesResyncInterval;
+    }
+
+    public int getBlockEntityTrackingRange() {
+        return blockEntityTrackingRange;
+    }
+
+    public void setBlockEntityTrackingRange(int blockEntityTrackingRange) {
+        this.blockEntityTrackingRange = blockEntityTrackingRange;
+    }
+
+    public int getBlockEntityTrackingBudget() {
+        return blockEntityTrackingBudget;
+    }
+
+    public void setBlockEntityTrackingBudget(int blockEntityTrackingBudget) {
+        this.blockEntityTrackingBudget = blockEntityTrackingBudget;
+    }
+
+    public boolean isParallelWorldDataLoading() {
+        return parallelWorldDataLoading;
+    }
+
+    public void setParallelWorldDataLoading(boolean parallelWorldDataLoading) {
+        this.parallelWorldDataLoading = parallelWorldDataLoading;
+    }
+
     public NBTTagCompound serializeNBT() {
         NBTTagCompound compound = new NBTTagCompound();
         NBTHandler.INSTANCE.saveNBTData(this, compound);
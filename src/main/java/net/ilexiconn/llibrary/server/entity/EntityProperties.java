@@ -1,5 +1,10 @@
 package net.ilexiconn.llibrary.server.entity;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import net.ilexiconn.llibrary.server.nbt.NBTChangeTracker;
+import net.ilexiconn.llibrary.server.nbt.NBTHandler;
+import net.ilexiconn.llibrary.server.network.PropertiesMessage;
 import net.ilexiconn.llibrary.server.util.WeakIdentityHashMap;
 import net.minecraft.entity.Entity;
 import net.minecraft.nbt.NBTTagCompound;
@@ -23,12 +28,26 @@ public abstract class EntityProperties<T extends Entity> implements IExtendedEnt
     private World world;
     private T entity;
     private Set<PropertiesTracker<?>> trackers = Collections.newSetFromMap(new WeakIdentityHashMap<>());
+    private int trackingVersion;
+    private long trackingVersionTick = Long.MIN_VALUE;
+    private boolean trackingDirty = true;
+    private NBTTagCompound trackingVersionData;
+    private NBTTagCompound trackingData;
+    private long trackingDataTick = Long.MIN_VALUE;
+    private ByteBuf trackingPayload;
+    private ByteBuf trackingDeltaPayload;
+    private NBTTagCompound trackingPayloadData;
+    private int trackingPayloadVersion = PropertiesTracker.NO_VERSION;
+    private int trackingDeltaBaseVersion = PropertiesTracker.NO_VERSION;
+    private long trackingPayloadTick = Long.MIN_VALUE;
+    private NBTChangeTracker changeTracker;
 
     @Override
     public final void init(Entity entity, World world) {
         this.entity = (T) entity;
         this.world = world;
         this.init();
+        this.changeTracker = this.createChangeTracker();
     }
 
     /**
@@ -45,6 +64,125 @@ public abstract class EntityProperties<T extends Entity> implements IExtendedEnt
         this.trackers.forEach(PropertiesTracker::setReady);
     }
 
+    /**
+     * Marks the tracking sensitive data as changed. Trackers pick up the change the next time they compare data.
+     * Properties that use manual tracking must call this whenever tracking sensitive data changes.
+     */
+    public void markTrackingDirty() {
+        this.trackingDirty = true;
+    }
+
+    /**
+     * Return true to only detect changes through {@link #markTrackingDirty()}, instead of comparing the tracking
+     * sensitive data. This avoids serializing the data every update.
+     *
+     * @return true if changes are only detected through {@link #markTrackingDirty()}
+     */
+    public boolean usesManualTracking() {
+        return false;
+    }
+
+    /**
+     * Return a change tracker to detect changes of the tracking sensitive data, instead of saving and comparing all
+     * data every update. Only use this if the tracking sensitive data is saved with
+     * {@link NBTHandler#saveNBTData(Object, NBTTagCompound)}, for example by returning
+     * {@code NBTHandler.INSTANCE.createChangeTracker(this)}. {@link #markTrackingDirty()} still forces a new version.
+     *
+     * @return the change tracker, or null to compare the saved data
+     * @since 1.6.0
+     */
+    protected NBTChangeTracker createChangeTracker() {
+        return null;
+    }
+
+    /**
+     * Get the version of the tracking sensitive data, which is incremented every time the data changes. The version
+     * is computed at most once per tick, no matter how many trackers request it.
+     *
+     * @return the current tracking version
+     */
+    public int getTrackingVersion() {
+        long tick = this.world != null ? this.world.getTotalWorldTime() : 0;
+        if (tick != this.trackingVersionTick) {
+            this.trackingVersionTick = tick;
+            if (this.usesManualTracking()) {
+                if (this.trackingDirty) {
+                    this.trackingVersion++;
+                }
+            } else if (this.changeTracker != null) {
+                if (this.changeTracker.saveChanges(new NBTTagCompound()) || this.trackingDirty) {
+                    this.trackingVersion++;
+                }
+            } else {
+                NBTTagCompound compound = this.getTrackingData();
+                if (this.trackingDirty || !compound.equals(this.trackingVersionData)) {
+                    this.trackingVersion++;
+                }
+                this.trackingVersionData = compound;
+            }
+            this.trackingDirty = false;
+        }
+        return this.trackingVersion;
+    }
+
+    /**
+     * Get the tracking sensitive data of the current tick. The data is saved at most once per tick and shared by all
+     * trackers, so the returned compound must not be modified.
+     *
+     * @return the tracking sensitive data
+     */
+    public NBTTagCompound getTrackingData() {
+        long tick = this.world != null ? this.world.getTotalWorldTime() : 0;
+        if (this.trackingData == null || tick != this.trackingDataTick) {
+            NBTTagCompound compound = new NBTTagCompound();
+            this.saveTrackingSensitiveData(compound);
+            this.trackingData = compound;
+            this.trackingDataTick = tick;
+        }
+        return this.trackingData;
+    }
+
+    /**
+     * Get the encoded tracking data of the current tick. If the given version is the one synced right before the
+     * current version, only the changes since that version are encoded, otherwise all data is. Payloads are encoded
+     * at most once per tick and written as is to every player that receives them, so the returned buffer must not be
+     * modified.
+     *
+     * @param baseVersion the version the receiver already has, or {@link PropertiesTracker#NO_VERSION}
+     * @return the encoded {@link PropertiesMessage} payload
+     */
+    public ByteBuf getTrackingPayload(int baseVersion) {
+        long tick = this.world != null ? this.world.getTotalWorldTime() : 0;
+        if (this.trackingPayload == null || tick != this.trackingPayloadTick) {
+            int version = this.getTrackingVersion();
+            NBTTagCompound compound = this.getTrackingData();
+            if (version != this.trackingPayloadVersion) {
+                this.trackingDeltaPayload = null;
+                if (this.trackingPayloadData != null) {
+                    this.trackingDeltaPayload = Unpooled.buffer();
+                    PropertiesMessage.encodeDelta(this.trackingDeltaPayload, this.trackingPayloadData, compound);
+                }
+                this.trackingDeltaBaseVersion = this.trackingPayloadVersion;
+                this.trackingPayloadVersion = version;
+            }
+            this.trackingPayload = Unpooled.buffer();
+            PropertiesMessage.encodeFull(this.trackingPayload, compound);
+            this.trackingPayloadData = compound;
+            this.trackingPayloadTick = tick;
+        }
+        if (baseVersion != PropertiesTracker.NO_VERSION && baseVersion == this.trackingDeltaBaseVersion && this.trackingDeltaPayload != null) {
+            return this.trackingDeltaPayload;
+        }
+        return this.trackingPayload;
+    }
+
+    /**
+     * @return the tracking version of the payloads returned by {@link #getTrackingPayload(int)} this tick
+     */
+    public int getTrackingPayloadVersion() {
+        return this.trackingPayloadVersion;
+    }
+
     /**
      * @return the world
      */
@@ -1,35 +1,50 @@
 package net.ilexiconn.llibrary.server.entity;
 
 import net.ilexiconn.llibrary.LLibrary;
+import net.ilexiconn.llibrary.server.util.Tuple3;
 import net.ilexiconn.llibrary.server.util.WeakIdentityHashMap;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.world.World;
 import net.minecraftforge.common.IExtendedEntityProperties;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Constructor;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.stream.Stream;
 
 /**
+ * Registered properties and property lookups can be used from any thread, trackers must only be used from the
+ * server thread.
+ *
  * @author TheCyberBrick
  * @since 1.0.0
  */
 public enum EntityPropertiesHandler {
     INSTANCE;
 
-    private Map<Class<? extends EntityProperties>, String> propertiesIDMap = new HashMap<>();
-    private Map<Class<? extends Entity>, List<Class<? extends EntityProperties<?>>>> registeredProperties = new HashMap<>();
-    private Map<Class<? extends Entity>, List<String>> entityPropertiesCache = new HashMap<>();
-    private Map<EntityPlayerMP, List<PropertiesTracker<?>>> trackerMap = new WeakIdentityHashMap<>();
+    private volatile Map<Class<? extends EntityProperties>, String> propertiesIDMap = Collections.emptyMap();
+    private volatile Map<Class<? extends Entity>, List<Class<? extends EntityProperties<?>>>> registeredProperties = Collections.emptyMap();
+    private Map<Class<? extends Entity>, List<String>> entityPropertiesCache = new ConcurrentHashMap<>();
+    private volatile ClassValue<EntityClassProperties> constructorCache = this.createConstructorCache();
+    private Map<EntityPlayerMP, TrackerIndex> trackerMap = new WeakIdentityHashMap<>();
+    private Map<EntityPlayerMP, Map<String, Integer>> networkIDMap = new WeakIdentityHashMap<>();
+    private Map<Entity, Set<EntityPlayerMP>> watcherMap = new WeakIdentityHashMap<>();
+    private final Queue<Tuple3<EntityPlayerMP, Integer, String>> resyncRequests = new ConcurrentLinkedQueue<>();
 
     /**
-     * Register a new properties class.
+     * Register a new properties class. The registry is copied on every registration, so it can be read from any
+     * thread without locking.
      *
      * @param propertiesClass the properties class
      * @param <E>             the entity type
      * @param <T>             the properties type
      */
-    public <E extends Entity, T extends EntityProperties<E>> void registerProperties(Class<T> propertiesClass) {
+    public synchronized <E extends Entity, T extends EntityProperties<E>> void registerProperties(Class<T> propertiesClass) {
         T properties;
         try {
             Constructor<T> constructor = propertiesClass.getConstructor();
@@ -42,13 +57,69 @@ public enum EntityPropertiesHandler {
             LLibrary.LOGGER.fatal("Duplicate entity properties with ID " + properties.getID());
             return;
         }
-        this.propertiesIDMap.put(propertiesClass, properties.getID());
+        Map<Class<? extends EntityProperties>, String> propertiesIDMap = new HashMap<>(this.propertiesIDMap);
+        propertiesIDMap.put(propertiesClass, properties.getID());
         Class<E> entityClass = properties.getEntityClass();
-        List<Class<? extends EntityProperties<?>>> list = this.registeredProperties.get(entityClass);
-        if (list == null) {
-            this.registeredProperties.put(entityClass, list = new ArrayList<>());
+        Map<Class<? extends Entity>, List<Class<? extends EntityProperties<?>>>> registeredProperties = new HashMap<>(this.registeredProperties);
+        List<Class<? extends EntityProperties<?>>> list = new ArrayList<>();
+        if (registeredProperties.containsKey(entityClass)) {
+            list.addAll(registeredProperties.get(entityClass));
         }
         list.add(propertiesClass);
+        registeredProperties.put(entityClass, Collections.unmodifiableList(list));
+        this.propertiesIDMap = Collections.unmodifiableMap(propertiesIDMap);
+        this.registeredProperties = Collections.unmodifiableMap(registeredProperties);
+        this.constructorCache = this.createConstructorCache();
+    }
+
+    /**
+     * Create and register all properties that apply to the given entity. The properties constructors that apply to
+     * an entity class are resolved once per class.
+     *
+     * @param entity the entity instance
+     */
+    public void constructProperties(Entity entity) {
+        for (MethodHandle constructor : this.constructorCache.get(entity.getClass()).constructors) {
+            try {
+                EntityProperties<?> properties = (EntityProperties<?>) constructor.invokeExact();
+                entity.registerExtendedProperties(properties.getID(), properties);
+            } catch (Throwable e) {
+                LLibrary.LOGGER.fatal("Failed to construct entity properties", e);
+            }
+        }
+    }
+
+    private ClassValue<EntityClassProperties> createConstructorCache() {
+        return new ClassValue<EntityClassProperties>() {
+            @Override
+            protected EntityClassProperties computeValue(Class<?> type) {
+                return EntityPropertiesHandler.this.resolveConstructors((Class<? extends Entity>) type);
+            }
+        };
+    }
+
+    private EntityClassProperties resolveConstructors(Class<? extends Entity> entityClass) {
+        List<MethodHandle> constructors = new ArrayList<>();
+        List<String> propertyIDs = new ArrayList<>();
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        Map<Class<? extends EntityProperties>, String> propertiesIDMap = this.propertiesIDMap;
+        for (Map.Entry<Class<? extends Entity>, List<Class<? extends EntityProperties<?>>>> entry : this.registeredProperties.entrySet()) {
+            if (entry.getKey().isAssignableFrom(entityClass)) {
+                for (Class<? extends EntityProperties<?>> propertiesClass : entry.getValue()) {
+                    try {
+                        Constructor<? extends EntityProperties<?>> constructor = propertiesClass.getConstructor();
+                        constructor.setAccessible(true);
+                        constructors.add(lookup.unreflectConstructor(constructor).asType(MethodType.methodType(EntityProperties.class)));
+                        propertyIDs.add(propertiesIDMap.get(propertiesClass));
+                    } catch (ReflectiveOperationException e) {
+                        LLibrary.LOGGER.fatal("Failed to resolve entity properties constructor", e);
+                    }
+                }
+            }
+        }
+        EntityClassProperties classProperties = new EntityClassProperties(constructors.toArray(new MethodHandle[constructors.size()]), Collections.unmodifiableList(propertyIDs));
+        this.entityPropertiesCache.put(entityClass, classProperties.propertyIDs);
+        return classProperties;
     }
 
     /**
@@ -60,8 +131,9 @@ public enum EntityPropertiesHandler {
      * @return the entity properties, null if they don't exist
      */
     public <T extends EntityProperties<?>> T getProperties(Entity entity, Class<T> propertiesClass) {
-        if (entity != null && this.propertiesIDMap.containsKey(propertiesClass)) {
-            return (T) entity.getExtendedProperties(this.propertiesIDMap.get(propertiesClass));
+        String propertiesID = entity != null ? this.propertiesIDMap.get(propertiesClass) : null;
+        if (propertiesID != null) {
+            return (T) entity.getExtendedProperties(propertiesID);
         }
         return null;
     }
@@ -74,11 +146,11 @@ public enum EntityPropertiesHandler {
      * @param <T>    the entity type
      */
     public <T extends Entity> void addTracker(EntityPlayerMP player, T entity) {
-        List<String> entityProperties = this.entityPropertiesCache.get(entity.getClass());
-        if (entityProperties != null) {
-            List<PropertiesTracker<?>> trackerList = this.trackerMap.get(player);
-            if (trackerList == null) {
-                this.trackerMap.put(player, trackerList = new ArrayList<>());
+        List<String> entityProperties = this.constructorCache.get(entity.getClass()).propertyIDs;
+        if (!entityProperties.isEmpty()) {
+            TrackerIndex trackerIndex = this.trackerMap.get(player);
+            if (trackerIndex == null) {
+                this.trackerMap.put(player, trackerIndex = new TrackerIndex());
             }
             for (String propID : entityProperties) {
                 IExtendedEntityProperties extendedProperties = entity.getExtendedProperties(propID);
@@ -87,7 +159,12 @@ public enum EntityPropertiesHandler {
                     if (properties.getTrackingTime() >= 0) {
                         PropertiesTracker<T> tracker = properties.createTracker(entity);
                         tracker.setReady();
-                        trackerList.add(tracker);
+                        trackerIndex.add(tracker);
+                        Set<EntityPlayerMP> watchers = this.watcherMap.get(entity);
+                        if (watchers == null) {
+                            this.watcherMap.put(entity, watchers = Collections.newSetFromMap(new IdentityHashMap<>()));
+                        }
+                        watchers.add(player);
                     }
                 }
             }
@@ -101,17 +178,58 @@ public enum EntityPropertiesHandler {
      * @param entity the entity instance
      */
     public void removeTracker(EntityPlayerMP player, Entity entity) {
-        List<PropertiesTracker<?>> trackerList = this.trackerMap.get(player);
-        if (trackerList != null && trackerList.size() > 0) {
-            Iterator<PropertiesTracker<?>> iterator = trackerList.iterator();
-            while (iterator.hasNext()) {
-                PropertiesTracker<?> tracker = iterator.next();
-                if (tracker.getEntity().equals(entity)) {
-                    iterator.remove();
-                    tracker.removeTracker();
+        TrackerIndex trackerIndex = this.trackerMap.get(player);
+        if (trackerIndex != null) {
+            trackerIndex.remove(entity).forEach(PropertiesTracker::removeTracker);
+        }
+        Set<EntityPlayerMP> watchers = this.watcherMap.get(entity);
+        if (watchers != null) {
+            watchers.remove(player);
+            if (watchers.isEmpty()) {
+                this.watcherMap.remove(entity);
+            }
+        }
+    }
+
+    /**
+     * Remove all trackers of an entity, from every player tracking it. If the entity is a player, all its own
+     * trackers are removed as well.
+     *
+     * @param entity the entity instance
+     */
+    public void removeEntity(Entity entity) {
+        Set<EntityPlayerMP> watchers = this.watcherMap.remove(entity);
+        if (watchers != null) {
+            for (EntityPlayerMP player : watchers) {
+                TrackerIndex trackerIndex = this.trackerMap.get(player);
+                if (trackerIndex != null) {
+                    trackerIndex.remove(entity).forEach(PropertiesTracker::removeTracker);
                 }
             }
         }
+        if (entity instanceof EntityPlayerMP) {
+            this.removePlayer((EntityPlayerMP) entity);
+        }
+    }
+
+    /**
+     * Remove all trackers of entities in a world, and all trackers of players in that world.
+     *
+     * @param world the world instance
+     */
+    public void removeWorld(World world) {
+        List<Entity> entities = new ArrayList<>();
+        for (Entity entity : this.watcherMap.keySet()) {
+            if (entity.worldObj == world) {
+                entities.add(entity);
+            }
+        }
+        for (EntityPlayerMP player : this.trackerMap.keySet()) {
+            if (player.worldObj == world) {
+                entities.add(player);
+            }
+        }
+        entities.forEach(this::removeEntity);
     }
 
     /**
@@ -120,11 +238,34 @@ public enum EntityPropertiesHandler {
      * @param player the player instance
      */
     public void removePlayer(EntityPlayerMP player) {
-        List<PropertiesTracker<?>> trackers = this.trackerMap.get(player);
-        if (trackers != null && trackers.size() > 0) {
-            trackers.forEach(PropertiesTracker::removeTracker);
+        TrackerIndex trackerIndex = this.trackerMap.remove(player);
+        if (trackerIndex != null) {
+            for (PropertiesTracker<?> tracker : trackerIndex.getTrackers()) {
+                tracker.removeTracker();
+                Set<EntityPlayerMP> watchers = this.watcherMap.get(tracker.getEntity());
+                if (watchers != null) {
+                    watchers.remove(player);
+                    if (watchers.isEmpty()) {
+                        this.watcherMap.remove(tracker.getEntity());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the table of property IDs that were already sent to a player, mapped to the numeric IDs they are sent
+     * as from then on.
+     *
+     * @param player the player instance
+     * @return the property network IDs of the player
+     */
+    public Map<String, Integer> getNetworkIDs(EntityPlayerMP player) {
+        Map<String, Integer> networkIDs = this.networkIDMap.get(player);
+        if (networkIDs == null) {
+            this.networkIDMap.put(player, networkIDs = new HashMap<>());
         }
-        this.trackerMap.remove(player);
+        return networkIDs;
     }
 
     /**
@@ -142,7 +283,7 @@ public enum EntityPropertiesHandler {
      * @param propertyIDs the property IDs
      */
     public void addEntityToCache(Class<? extends Entity> entityClass, List<String> propertyIDs) {
-        this.entityPropertiesCache.put(entityClass, propertyIDs);
+        this.entityPropertiesCache.put(entityClass, Collections.unmodifiableList(propertyIDs));
     }
 
     /**
@@ -152,6 +293,35 @@ public enum EntityPropertiesHandler {
         return this.registeredProperties.entrySet().stream();
     }
 
+    /**
+     * Request a full resync of the given properties to a player. Can be called from any thread, requests are handled
+     * by {@link #processResyncRequests()}.
+     *
+     * @param player     the player instance
+     * @param entityID   the id of the tracked entity
+     * @param propertyID the properties id
+     */
+    public void requestResync(EntityPlayerMP player, int entityID, String propertyID) {
+        this.resyncRequests.add(new Tuple3<>(player, entityID, propertyID));
+    }
+
+    /**
+     * Handle all pending resync requests, called at the start of every server tick.
+     */
+    public void processResyncRequests() {
+        Tuple3<EntityPlayerMP, Integer, String> request;
+        while ((request = this.resyncRequests.poll()) != null) {
+            TrackerIndex trackerIndex = this.trackerMap.get(request.getA());
+            if (trackerIndex != null) {
+                for (PropertiesTracker<?> tracker : trackerIndex.get(request.getB())) {
+                    if (tracker.getProperties().getID().equals(request.getC())) {
+                        tracker.requestResync();
+                    }
+                }
+            }
+        }
+    }
+
     /**
      * Get all entity trackers from a player.
      *
@@ -159,13 +329,55 @@ public enum EntityPropertiesHandler {
      * @return all entity trackers
      */
     public List<PropertiesTracker<?>> getEntityTrackers(EntityPlayerMP player) {
-        return trackerMap.get(player);
+        TrackerIndex trackerIndex = this.trackerMap.get(player);
+        return trackerIndex != null ? trackerIndex.getTrackers() : null;
+    }
+
+    /**
+     * Check if a player tracks an entity.
+     *
+     * @param player the player instance
+     * @param entity the entity instance
+     * @return true if the player has any trackers for the entity
+     */
+    public boolean hasTracker(EntityPlayerMP player, Entity entity) {
+        TrackerIndex trackerIndex = this.trackerMap.get(player);
+        return trackerIndex != null && trackerIndex.contains(entity);
     }
 
     /**
      * @return the Iterator of the current trackers
+     * @deprecated trackers are removed automatically when their entity or player is removed
      */
+    @Deprecated
     public Iterator<Map.Entry<EntityPlayerMP, List<PropertiesTracker<?>>>> getTrackerIterator() {
-        return this.trackerMap.entrySet().iterator();
+        Iterator<Map.Entry<EntityPlayerMP, TrackerIndex>> iterator = this.trackerMap.entrySet().iterator();
+        return new Iterator<Map.Entry<EntityPlayerMP, List<PropertiesTracker<?>>>>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public Map.Entry<EntityPlayerMP, List<PropertiesTracker<?>>> next() {
+                Map.Entry<EntityPlayerMP, TrackerIndex> entry = iterator.next();
+                return new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue().getTrackers());
+            }
+
+            @Override
+            public void remove() {
+                iterator.remove();
+            }
+        };
+    }
+
+    private static final class EntityClassProperties {
+        private final MethodHandle[] constructors;
+        private final List<String> propertyIDs;
+
+        private EntityClassProperties(MethodHandle[] constructors, List<String> propertyIDs) {
+            this.constructors = constructors;
+            this.propertyIDs = propertyIDs;
+        }
     }
 }
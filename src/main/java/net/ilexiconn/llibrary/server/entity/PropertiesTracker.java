@@ -1,7 +1,8 @@
 package net.ilexiconn.llibrary.server.entity;
 
+import io.netty.buffer.ByteBuf;
+import net.ilexiconn.llibrary.LLibrary;
 import net.minecraft.entity.Entity;
-import net.minecraft.nbt.NBTTagCompound;
 
 /**
  * @param <T> the entity type
@@ -9,12 +10,20 @@ import net.minecraft.nbt.NBTTagCompound;
  * @since 1.0.0
  */
 public class PropertiesTracker<T extends Entity> {
+    /**
+     * Version of a tracker that hasn't synced any data yet
+     */
+    public static final int NO_VERSION = -1;
+
     private int trackingTimer = 0;
     private int trackingUpdateTimer = 0;
     private boolean trackerReady = false;
     private boolean trackerDataChanged = false;
 
-    private NBTTagCompound prevTrackerData = new NBTTagCompound();
+    private int prevTrackingVersion;
+    private int syncedVersion = NO_VERSION;
+    private int syncsSinceResync;
+    int index = -1;
 
     private T entity;
     private EntityProperties properties;
@@ -22,6 +31,7 @@ public class PropertiesTracker<T extends Entity> {
     public PropertiesTracker(T entity, EntityProperties<T> properties) {
         this.entity = entity;
         this.properties = properties;
+        this.prevTrackingVersion = properties.getTrackingVersion();
     }
 
     /**
@@ -42,12 +52,11 @@ public class PropertiesTracker<T extends Entity> {
         if (this.trackingUpdateTimer >= trackingUpdateFrequency) {
             if (!this.trackerDataChanged) {
                 this.trackingUpdateTimer = 0;
-                NBTTagCompound currentTrackingData = new NBTTagCompound();
-                this.properties.saveTrackingSensitiveData(currentTrackingData);
-                if (!currentTrackingData.equals(this.prevTrackerData)) {
+                int trackingVersion = this.properties.getTrackingVersion();
+                if (trackingVersion != this.prevTrackingVersion) {
                     this.trackerDataChanged = true;
                 }
-                this.prevTrackerData = currentTrackingData;
+                this.prevTrackingVersion = trackingVersion;
             }
         }
     }
@@ -60,6 +69,14 @@ public class PropertiesTracker<T extends Entity> {
         this.trackerDataChanged = true;
     }
 
+    /**
+     * Sends all data on the next sync, for players that lost track of earlier data
+     */
+    public void requestResync() {
+        this.syncedVersion = NO_VERSION;
+        this.setReady();
+    }
+
     /**
      * @return true if the data has changed and the tracking timer is ready and resets the tracking timer
      */
@@ -69,11 +86,29 @@ public class PropertiesTracker<T extends Entity> {
             this.trackingTimer = 0;
             this.trackerReady = false;
             this.trackerDataChanged = false;
+            this.prevTrackingVersion = this.properties.getTrackingVersion();
             return true;
         }
         return false;
     }
 
+    /**
+     * Get the payload to sync to this tracker's player. Only the changes since the last sync are sent, unless the
+     * player may be missing an earlier change or a periodic full resync is due.
+     *
+     * @return the encoded payload, must not be modified
+     */
+    public ByteBuf createSyncPayload() {
+        int resyncInterval = LLibrary.CONFIG.getPropertiesResyncInterval();
+        boolean resync = this.syncedVersion == NO_VERSION || (resyncInterval > 0 && ++this.syncsSinceResync >= resyncInterval);
+        if (resync) {
+            this.syncsSinceResync = 0;
+        }
+        ByteBuf payload = this.properties.getTrackingPayload(resync ? NO_VERSION : this.syncedVersion);
+        this.syncedVersion = this.properties.getTrackingPayloadVersion();
+        return payload;
+    }
+
     /**
      * Called when the data is syncing
      */
@@ -0,0 +1,77 @@
+package net.ilexiconn.llibrary.server.entity;
+
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.world.IWorldAccess;
+
+/**
+ * Removes the properties trackers of entities as soon as they are removed from a server world.
+ *
+ * @since 1.6.0
+ */
+public class TrackerCleanupWorldAccess implements IWorldAccess {
+    @Override
+    public void onEntityDestroy(Entity entity) {
+        EntityPropertiesHandler.INSTANCE.removeEntity(entity);
+    }
+
+    @Override
+    public void markBlockForUpdate(int x, int y, int z) {
+
+    }
+
+    @Override
+    public void markBlockForRenderUpdate(int x, int y, int z) {
+
+    }
+
+    @Override
+    public void markBlockRangeForRenderUpdate(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+
+    }
+
+    @Override
+    public void playSound(String sound, double x, double y, double z, float volume, float pitch) {
+
+    }
+
+    @Override
+    public void playSoundToNearExcept(EntityPlayer player, String sound, double x, double y, double z, float volume, float pitch) {
+
+    }
+
+    @Override
+    public void spawnParticle(String particle, double x, double y, double z, double velocityX, double velocityY, double velocityZ) {
+
+    }
+
+    @Override
+    public void onEntityCreate(Entity entity) {
+
+    }
+
+    @Override
+    public void playRecord(String record, int x, int y, int z) {
+
+    }
+
+    @Override
+    public void broadcastSound(int type, int x, int y, int z, int data) {
+
+    }
+
+    @Override
+    public void playAuxSFX(EntityPlayer player, int type, int x, int y, int z, int data) {
+
+    }
+
+    @Override
+    public void destroyBlockPartially(int breakerID, int x, int y, int z, int progress) {
+
+    }
+
+    @Override
+    public void onStaticEntitiesChanged() {
+
+    }
+}
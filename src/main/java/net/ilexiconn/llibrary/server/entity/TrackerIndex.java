@@ -0,0 +1,83 @@
+package net.ilexiconn.llibrary.server.entity;
+
+import net.minecraft.entity.Entity;
+import net.minecraft.util.IntHashMap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The trackers of a single player, indexed by entity ID. Adding, removing and looking up the trackers of an entity
+ * doesn't depend on the amount of trackers the player has.
+ *
+ * @since 1.6.0
+ */
+final class TrackerIndex {
+    private final IntHashMap trackersByEntity = new IntHashMap();
+    private final List<PropertiesTracker<?>> trackers = new ArrayList<>();
+
+    void add(PropertiesTracker<?> tracker) {
+        int entityID = tracker.getEntity().getEntityId();
+        List<PropertiesTracker<?>> entityTrackers = (List<PropertiesTracker<?>>) this.trackersByEntity.lookup(entityID);
+        if (entityTrackers == null) {
+            this.trackersByEntity.addKey(entityID, entityTrackers = new ArrayList<>(1));
+        }
+        entityTrackers.add(tracker);
+        tracker.index = this.trackers.size();
+        this.trackers.add(tracker);
+    }
+
+    List<PropertiesTracker<?>> remove(Entity entity) {
+        int entityID = entity.getEntityId();
+        List<PropertiesTracker<?>> entityTrackers = (List<PropertiesTracker<?>>) this.trackersByEntity.lookup(entityID);
+        if (entityTrackers == null) {
+            return Collections.emptyList();
+        }
+        List<PropertiesTracker<?>> removed = new ArrayList<>(entityTrackers.size());
+        for (int i = entityTrackers.size() - 1; i >= 0; i--) {
+            PropertiesTracker<?> tracker = entityTrackers.get(i);
+            if (tracker.getEntity() == entity) {
+                entityTrackers.remove(i);
+                this.removeFromList(tracker);
+                removed.add(tracker);
+            }
+        }
+        if (entityTrackers.isEmpty()) {
+            this.trackersByEntity.removeObject(entityID);
+        }
+        return removed;
+    }
+
+    boolean contains(Entity entity) {
+        List<PropertiesTracker<?>> entityTrackers = (List<PropertiesTracker<?>>) this.trackersByEntity.lookup(entity.getEntityId());
+        if (entityTrackers != null) {
+            for (PropertiesTracker<?> tracker : entityTrackers) {
+                if (tracker.getEntity() == entity) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    List<PropertiesTracker<?>> get(int entityID) {
+        List<PropertiesTracker<?>> entityTrackers = (List<PropertiesTracker<?>>) this.trackersByEntity.lookup(entityID);
+        return entityTrackers != null ? entityTrackers : Collections.emptyList();
+    }
+
+    List<PropertiesTracker<?>> getTrackers() {
+        return this.trackers;
+    }
+
+    private void removeFromList(PropertiesTracker<?> tracker) {
+        int index = tracker.index;
+        int lastIndex = this.trackers.size() - 1;
+        PropertiesTracker<?> last = this.trackers.remove(lastIndex);
+        if (index != lastIndex) {
+            this.trackers.set(index, last);
+            last.index = index;
+        }
+        tracker.index = -1;
+    }
+}
@@ -1,7 +1,7 @@
 package net.ilexiconn.llibrary.server.entity.block;
 
 import net.ilexiconn.llibrary.LLibrary;
-import net.ilexiconn.llibrary.server.network.BlockEntityMessage;
+import net.ilexiconn.llibrary.server.network.MessageBatchHandler;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.network.NetworkManager;
 import net.minecraft.network.Packet;
@@ -14,27 +14,79 @@ import net.minecraft.tileentity.TileEntity;
  */
 public abstract class BlockEntity extends TileEntity {
     private NBTTagCompound lastCompound;
-    private int trackingUpdateTimer = 0;
+    private NBTTagCompound trackingCompound = new NBTTagCompound();
+    private boolean trackingDeferred;
+    private int trackingVersion;
+    private int syncedTrackingVersion = -1;
 
     @Override
     public final void updateEntity() {
-        int trackingUpdateFrequency = this.getTrackingUpdateTime();
-        if (this.trackingUpdateTimer < trackingUpdateFrequency) {
-            this.trackingUpdateTimer++;
+        if (!this.worldObj.isRemote) {
+            BlockEntityScheduler scheduler = BlockEntityScheduler.INSTANCE;
+            if (!this.trackingDeferred && scheduler.isDue(this.xCoord, this.yCoord, this.zCoord, this.getTrackingUpdateTime(), this.worldObj.getTotalWorldTime())) {
+                if (scheduler.hasBudget()) {
+                    this.processTracking();
+                } else {
+                    this.trackingDeferred = true;
+                    scheduler.defer(this);
+                }
+            }
         }
-        if (this.trackingUpdateTimer >= trackingUpdateFrequency) {
-            this.trackingUpdateTimer = 0;
-            NBTTagCompound compound = new NBTTagCompound();
+        this.onUpdate();
+    }
+
+    void processDeferredTracking() {
+        this.trackingDeferred = false;
+        if (!this.isInvalid() && this.hasWorldObj() && this.worldObj.blockExists(this.xCoord, this.yCoord, this.zCoord)) {
+            this.processTracking();
+        }
+    }
+
+    private void processTracking() {
+        long start = System.nanoTime();
+        this.trackingDeferred = false;
+        this.updateTracking();
+        BlockEntityScheduler.INSTANCE.onProcessed(System.nanoTime() - start);
+    }
+
+    private void updateTracking() {
+        if (this.usesManualTracking()) {
+            if (this.trackingVersion != this.syncedTrackingVersion) {
+                this.syncedTrackingVersion = this.trackingVersion;
+                this.onSync();
+                NBTTagCompound compound = new NBTTagCompound();
+                this.saveTrackingSensitiveData(compound);
+                MessageBatchHandler.INSTANCE.sendBlockEntityUpdate(this, compound);
+            }
+        } else {
+            NBTTagCompound compound = this.trackingCompound;
+            compound.func_150296_c().clear();
             this.saveTrackingSensitiveData(compound);
             if (!compound.equals(this.lastCompound)) {
-                if (!this.worldObj.isRemote) {
-                    this.onSync();
-                    LLibrary.NETWORK_WRAPPER.sendToAll(new BlockEntityMessage(this));
-                }
+                this.onSync();
+                MessageBatchHandler.INSTANCE.sendBlockEntityUpdate(this, compound);
+                this.trackingCompound = this.lastCompound != null ? this.lastCompound : new NBTTagCompound();
                 this.lastCompound = compound;
             }
         }
-        this.onUpdate();
+    }
+
+    /**
+     * Marks the tracking sensitive data as changed. Block entities that use manual tracking must call this whenever
+     * tracking sensitive data changes.
+     */
+    public void markTrackingDirty() {
+        this.trackingVersion++;
+    }
+
+    /**
+     * Return true to only detect changes through {@link #markTrackingDirty()}, instead of comparing the tracking
+     * sensitive data. Idle block entities then don't serialize or allocate anything when updating.
+     *
+     * @return true if changes are only detected through {@link #markTrackingDirty()}
+     */
+    public boolean usesManualTracking() {
+        return false;
     }
 
     @Override
@@ -109,7 +161,16 @@ public abstract class BlockEntity extends TileEntity {
     }
 
     /**
-     * @return how often the tracking sensitive data is compared
+     * @return the maximum horizontal distance in blocks at which players receive updates, 0 or less to send updates
+     * to all players that have this block's chunk loaded
+     */
+    public int getTrackingRange() {
+        return LLibrary.CONFIG.getBlockEntityTrackingRange();
+    }
+
+    /**
+     * @return how often the tracking sensitive data is compared. Block entities with the same interval are spread
+     * evenly across ticks based on their position
      */
     public int getTrackingUpdateTime() {
         return 0;
@@ -0,0 +1,109 @@
+package net.ilexiconn.llibrary.server.entity.block;
+
+import net.ilexiconn.llibrary.LLibrary;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+/**
+ * Spreads the tracking checks of {@link BlockEntity} instances across ticks and limits the time spent on them per
+ * server tick. Checks that don't fit in the budget are queued, and the queue is processed first at the start of the
+ * next tick, oldest checks first.
+ *
+ * @since 1.6.0
+ */
+public enum BlockEntityScheduler {
+    INSTANCE;
+
+    private final Queue<BlockEntity> deferred = new ArrayDeque<>();
+    private long tickNanos;
+    private int tickProcessed;
+    private int tickDeferred;
+    private long lastTickNanos;
+    private int lastTickProcessed;
+    private int lastTickDeferred;
+    private long totalDeferred;
+
+    /**
+     * Check if a block entity at the given position should compare its tracking data this tick. Block entities with
+     * the same interval are assigned a stable phase based on their position.
+     *
+     * @param x         the x position
+     * @param y         the y position
+     * @param z         the z position
+     * @param interval  the tracking update interval in ticks
+     * @param worldTime the total world time
+     * @return true if the check is due this tick
+     */
+    public boolean isDue(int x, int y, int z, int interval, long worldTime) {
+        if (interval <= 1) {
+            return true;
+        }
+        int hash = x * 73428767 ^ y * 912931 ^ z * 42317861;
+        hash ^= hash >>> 16;
+        return Math.floorMod(worldTime + hash, (long) interval) == 0;
+    }
+
+    /**
+     * @return true if there is time left for tracking checks this tick
+     */
+    public boolean hasBudget() {
+        int budget = LLibrary.CONFIG.getBlockEntityTrackingBudget();
+        return budget <= 0 || this.tickNanos < budget * 1000L;
+    }
+
+    void onProcessed(long nanos) {
+        this.tickNanos += nanos;
+        this.tickProcessed++;
+    }
+
+    void defer(BlockEntity entity) {
+        this.deferred.add(entity);
+        this.tickDeferred++;
+        this.totalDeferred++;
+    }
+
+    /**
+     * Resets the budget and processes the checks deferred in previous ticks, called at the start of every server tick.
+     */
+    public void startTick() {
+        this.lastTickNanos = this.tickNanos;
+        this.lastTickProcessed = this.tickProcessed;
+        this.lastTickDeferred = this.tickDeferred;
+        this.tickNanos = 0;
+        this.tickProcessed = 0;
+        this.tickDeferred = 0;
+        BlockEntity entity;
+        while (this.hasBudget() && (entity = this.deferred.poll()) != null) {
+            entity.processDeferredTracking();
+        }
+    }
+
+    /**
+     * @return the time spent on tracking checks in the previous tick, in nanoseconds
+     */
+    public long getLastTickNanos() {
+        return this.lastTickNanos;
+    }
+
+    /**
+     * @return the amount of tracking checks done in the previous tick
+     */
+    public int getLastTickProcessed() {
+        return this.lastTickProcessed;
+    }
+
+    /**
+     * @return the amount of tracking checks deferred in the previous tick
+     */
+    public int getLastTickDeferred() {
+        return this.lastTickDeferred;
+    }
+
+    /**
+     * @return the amount of tracking checks deferred since the server started
+     */
+    public long getTotalDeferred() {
+        return this.totalDeferred;
+    }
+}
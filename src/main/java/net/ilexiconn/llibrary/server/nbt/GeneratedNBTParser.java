@@ -0,0 +1,51 @@
+package net.ilexiconn.llibrary.server.nbt;
+
+import net.ilexiconn.llibrary.server.nbt.parser.INBTParser;
+import net.minecraft.nbt.NBTTagCompound;
+
+/**
+ * Base class of the parsers generated by {@link NBTCodecGenerator}. Subclasses are only created at runtime.
+ *
+ * @since 1.6.0
+ */
+public abstract class GeneratedNBTParser implements INBTParser<Object, NBTTagCompound> {
+    protected final NBTCodec codec;
+    protected final NBTCodec.Property[] properties;
+
+    protected GeneratedNBTParser(NBTCodec codec) {
+        this.codec = codec;
+        this.properties = codec.getProperties();
+    }
+
+    /**
+     * Save all properties of the given object to the compound.
+     *
+     * @param object   the object instance
+     * @param compound the compound to save to
+     */
+    public abstract void save(Object object, NBTTagCompound compound);
+
+    /**
+     * Load all properties present in the compound into the given object.
+     *
+     * @param object   the object instance
+     * @param compound the compound to load from
+     */
+    public abstract void load(Object object, NBTTagCompound compound);
+
+    @Override
+    public Object parseTag(NBTTagCompound tag) {
+        Object object = this.codec.newInstance();
+        if (object != null) {
+            this.load(object, tag);
+        }
+        return object;
+    }
+
+    @Override
+    public NBTTagCompound parseValue(Object value) {
+        NBTTagCompound compound = new NBTTagCompound();
+        this.save(value, compound);
+        return compound;
+    }
+}
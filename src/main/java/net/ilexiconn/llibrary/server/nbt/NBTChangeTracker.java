@@ -0,0 +1,219 @@
+package net.ilexiconn.llibrary.server.nbt;
+
+import net.minecraft.nbt.NBTBase;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.nbt.NBTTagList;
+import net.minecraft.nbt.NBTTagString;
+
+/**
+ * Tracks which properties of a single object changed since they were last saved. Primitive properties are compared
+ * by their raw value, all other properties by the tag they were last written as. Properties that are modified in
+ * place, such as collections, can also be flagged explicitly with {@link #markDirty(String)}.
+ *
+ * @see NBTHandler#createChangeTracker(Object)
+ * @since 1.6.0
+ */
+public final class NBTChangeTracker {
+    /**
+     * Key of the list holding the names of properties that changed to null, properties can't be stored under it
+     */
+    static final String REMOVED = "__removed";
+
+    private final Object object;
+    private final NBTCodec.Property[] properties;
+    private final long[] rawSnapshots;
+    private final NBTBase[] tagSnapshots;
+    private final boolean[] saved;
+    private final long[] dirtyMask;
+
+    NBTChangeTracker(Object object, NBTCodec codec) {
+        this.object = object;
+        this.properties = codec.getProperties();
+        for (NBTCodec.Property property : this.properties) {
+            if (property.name.equals(REMOVED)) {
+                throw new IllegalArgumentException("Property " + object.getClass().getName() + "#" + REMOVED + " can't be change tracked, its name is reserved");
+            }
+        }
+        this.rawSnapshots = new long[this.properties.length];
+        this.tagSnapshots = new NBTBase[this.properties.length];
+        this.saved = new boolean[this.properties.length];
+        this.dirtyMask = new long[(this.properties.length + 63) >>> 6];
+    }
+
+    /**
+     * Save all properties to the compound and take a new snapshot.
+     *
+     * @param compound the compound to save to
+     */
+    public void save(NBTTagCompound compound) {
+        this.markDirty();
+        this.saveChanges(compound);
+    }
+
+    /**
+     * Save only the properties that changed since the last save, or that were marked dirty, to the compound.
+     * Properties that changed to null are listed by name. Loading the resulting compound with {@link #load(NBTTagCompound)}
+     * into an object that received all earlier saves results in the same state.
+     *
+     * @param delta the compound to save to
+     * @return true if anything was written
+     */
+    public boolean saveChanges(NBTTagCompound delta) {
+        boolean changed = false;
+        NBTTagList removed = new NBTTagList();
+        for (int i = 0; i < this.properties.length; i++) {
+            NBTCodec.Property property = this.properties[i];
+            boolean forced = (this.dirtyMask[i >>> 6] & (1L << i)) != 0;
+            if (property instanceof NBTCodec.PrimitiveProperty) {
+                long bits;
+                try {
+                    bits = ((NBTCodec.PrimitiveProperty) property).readRawBits(this.object);
+                } catch (Throwable e) {
+                    NBTCodec.logError(e);
+                    continue;
+                }
+                if (!forced && this.saved[i] && this.rawSnapshots[i] == bits) {
+                    continue;
+                }
+                NBTBase tag = property.write(this.object);
+                if (tag != null) {
+                    delta.setTag(property.name, tag);
+                    this.rawSnapshots[i] = bits;
+                    this.saved[i] = true;
+                    changed = true;
+                }
+            } else {
+                NBTBase tag = property.write(this.object);
+                if (tag == null) {
+                    if (property.isWritable() && (forced || this.tagSnapshots[i] != null)) {
+                        removed.appendTag(new NBTTagString(property.name));
+                        this.tagSnapshots[i] = null;
+                        this.saved[i] = true;
+                    }
+                    continue;
+                }
+                if (!forced && tag.equals(this.tagSnapshots[i])) {
+                    continue;
+                }
+                delta.setTag(property.name, tag);
+                this.tagSnapshots[i] = tag.copy();
+                this.saved[i] = true;
+                changed = true;
+            }
+        }
+        if (removed.tagCount() > 0) {
+            delta.setTag(REMOVED, removed);
+            changed = true;
+        }
+        for (int i = 0; i < this.dirtyMask.length; i++) {
+            this.dirtyMask[i] = 0;
+        }
+        return changed;
+    }
+
+    /**
+     * Load a full or delta compound into the object. Properties missing from the compound are left untouched, and
+     * properties listed as removed are set to null. The loaded values become the new snapshot, so they aren't reported
+     * as changes.
+     *
+     * @param compound the compound to load from
+     */
+    public void load(NBTTagCompound compound) {
+        NBTTagList removed = compound.getTagList(REMOVED, 8);
+        for (int i = 0; i < removed.tagCount(); i++) {
+            String name = removed.getStringTagAt(i);
+            for (int j = 0; j < this.properties.length; j++) {
+                NBTCodec.Property property = this.properties[j];
+                if (!(property instanceof NBTCodec.PrimitiveProperty) && property.name.equals(name)) {
+                    property.clear(this.object);
+                    this.tagSnapshots[j] = null;
+                    this.saved[j] = true;
+                }
+            }
+        }
+        for (int i = 0; i < this.properties.length; i++) {
+            NBTCodec.Property property = this.properties[i];
+            NBTBase tag = compound.getTag(property.name);
+            if (tag == null) {
+                continue;
+            }
+            property.read(this.object, tag);
+            if (property instanceof NBTCodec.PrimitiveProperty) {
+                try {
+                    this.rawSnapshots[i] = ((NBTCodec.PrimitiveProperty) property).readRawBits(this.object);
+                    this.saved[i] = true;
+                } catch (Throwable e) {
+                    NBTCodec.logError(e);
+                }
+            } else {
+                this.tagSnapshots[i] = tag.copy();
+                this.saved[i] = true;
+            }
+        }
+    }
+
+    /**
+     * Check if any property changed since the last save. This writes all non-primitive properties to compare them,
+     * so prefer calling {@link #saveChanges(NBTTagCompound)} directly when the changes are needed anyway.
+     *
+     * @return true if any property changed or was marked dirty
+     */
+    public boolean isDirty() {
+        for (long mask : this.dirtyMask) {
+            if (mask != 0) {
+                return true;
+            }
+        }
+        for (int i = 0; i < this.properties.length; i++) {
+            if (!this.saved[i]) {
+                return true;
+            }
+            NBTCodec.Property property = this.properties[i];
+            try {
+                if (property instanceof NBTCodec.PrimitiveProperty) {
+                    if (((NBTCodec.PrimitiveProperty) property).readRawBits(this.object) != this.rawSnapshots[i]) {
+                        return true;
+                    }
+                } else {
+                    NBTBase tag = property.write(this.object);
+                    if (tag == null ? this.tagSnapshots[i] != null : !tag.equals(this.tagSnapshots[i])) {
+                        return true;
+                    }
+                }
+            } catch (Throwable e) {
+                NBTCodec.logError(e);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Flag a property to be written on the next save, even if its value appears unchanged.
+     *
+     * @param name the name the property is stored under
+     */
+    public void markDirty(String name) {
+        for (int i = 0; i < this.properties.length; i++) {
+            if (this.properties[i].name.equals(name)) {
+                this.dirtyMask[i >>> 6] |= 1L << i;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Flag all properties to be written on the next save.
+     */
+    public void markDirty() {
+        for (int i = 0; i < this.properties.length; i++) {
+            this.dirtyMask[i >>> 6] |= 1L << i;
+        }
+    }
+
+    /**
+     * @return the tracked object
+     */
+    public Object getObject() {
+        return this.object;
+    }
+}
@@ -0,0 +1,441 @@
+package net.ilexiconn.llibrary.server.nbt;
+
+import net.ilexiconn.llibrary.LLibrary;
+import net.ilexiconn.llibrary.server.nbt.parser.IBooleanNBTParser;
+import net.ilexiconn.llibrary.server.nbt.parser.IByteNBTParser;
+import net.ilexiconn.llibrary.server.nbt.parser.ICharNBTParser;
+import net.ilexiconn.llibrary.server.nbt.parser.IDoubleNBTParser;
+import net.ilexiconn.llibrary.server.nbt.parser.IFloatNBTParser;
+import net.ilexiconn.llibrary.server.nbt.parser.IIntNBTParser;
+import net.ilexiconn.llibrary.server.nbt.parser.ILongNBTParser;
+import net.ilexiconn.llibrary.server.nbt.parser.INBTParser;
+import net.ilexiconn.llibrary.server.nbt.parser.IShortNBTParser;
+import net.ilexiconn.llibrary.server.nbt.parser.PrimitiveNBTParsers;
+import net.minecraft.crash.CrashReport;
+import net.minecraft.nbt.NBTBase;
+import net.minecraft.nbt.NBTTagCompound;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Serialization plan for a single class. All annotated fields, their names, accessors and parsers are resolved once
+ * when the codec is built, so saving and loading through a codec performs no reflective lookups.
+ *
+ * @see NBTHandler#getCodec(Class)
+ * @since 1.6.0
+ */
+public final class NBTCodec {
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private final Class<?> type;
+    private final Property[] properties;
+    private final MethodHandle constructor;
+    private GeneratedNBTParser generatedParser;
+
+    private NBTCodec(Class<?> type, Property[] properties, MethodHandle constructor) {
+        this.type = type;
+        this.properties = properties;
+        this.constructor = constructor;
+    }
+
+    /**
+     * Save all properties of the given object to the compound.
+     *
+     * @param object   the object instance
+     * @param compound the compound to save to
+     */
+    public void save(Object object, NBTTagCompound compound) {
+        if (this.generatedParser != null) {
+            this.generatedParser.save(object, compound);
+            return;
+        }
+        for (Property property : this.properties) {
+            property.save(object, compound);
+        }
+    }
+
+    /**
+     * Load all properties present in the compound into the given object.
+     *
+     * @param object   the object instance
+     * @param compound the compound to load from
+     */
+    public void load(Object object, NBTTagCompound compound) {
+        if (this.generatedParser != null) {
+            this.generatedParser.load(object, compound);
+            return;
+        }
+        for (Property property : this.properties) {
+            property.load(object, compound);
+        }
+    }
+
+    /**
+     * @return the class this codec was built for
+     */
+    public Class<?> getType() {
+        return this.type;
+    }
+
+    /**
+     * @return the resolved properties, in serialization order
+     */
+    public Property[] getProperties() {
+        return this.properties.clone();
+    }
+
+    /**
+     * @return the generated parser for this codec, null if generation is disabled or failed
+     */
+    public GeneratedNBTParser getGeneratedParser() {
+        return this.generatedParser;
+    }
+
+    /**
+     * Create a new instance of this codec's type through its no-args constructor.
+     *
+     * @return the new instance, null if the type has no usable no-args constructor
+     */
+    public Object newInstance() {
+        if (this.constructor == null) {
+            return null;
+        }
+        try {
+            return this.constructor.invoke();
+        } catch (Throwable e) {
+            NBTCodec.logError(e);
+            return null;
+        }
+    }
+
+    static NBTCodec create(Class<?> type, boolean generate) {
+        List<Property> properties = new ArrayList<>();
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        Class<?> clazz = type;
+        do {
+            for (Field field : clazz.getDeclaredFields()) {
+                try {
+                    if (field.isAnnotationPresent(NBTProperty.class)) {
+                        String name = field.getAnnotation(NBTProperty.class).name();
+                        if (name.isEmpty()) {
+                            name = field.getName();
+                        }
+                        field.setAccessible(true);
+                        MethodHandle getter = lookup.unreflectGetter(field);
+                        MethodHandle setter = lookup.unreflectSetter(field);
+                        properties.add(NBTCodec.createProperty(name, field, false, field.getGenericType(), getter, field.getGenericType(), setter));
+                    } else if (field.isAnnotationPresent(NBTMutatorProperty.class)) {
+                        NBTMutatorProperty mutatorProperty = field.getAnnotation(NBTMutatorProperty.class);
+                        String name = mutatorProperty.name();
+                        if (name.isEmpty()) {
+                            name = field.getName();
+                        }
+                        Class<?> mutatorType = mutatorProperty.type();
+                        Method getter = NBTCodec.resolveMutator(clazz, NBTCodec.getConventionalGetterName(name, mutatorType, mutatorProperty.getter()));
+                        Method setter = NBTCodec.resolveMutator(clazz, NBTCodec.getConventionalSetterName(name, mutatorProperty.setter()), mutatorType);
+                        Type writeType = getter == null ? null : getter.getGenericReturnType();
+                        Type readType = setter == null ? null : setter.getGenericParameterTypes()[0];
+                        properties.add(NBTCodec.createProperty(name, field, true, writeType, getter == null ? null : lookup.unreflect(getter), readType, setter == null ? null : lookup.unreflect(setter)));
+                    }
+                } catch (IllegalAccessException | IllegalArgumentException e) {
+                    NBTCodec.logError(e);
+                }
+            }
+        } while ((clazz = clazz.getSuperclass()) != null);
+        MethodHandle constructor = null;
+        if (!Modifier.isAbstract(type.getModifiers())) {
+            try {
+                Constructor<?> declaredConstructor = type.getDeclaredConstructor();
+                declaredConstructor.setAccessible(true);
+                constructor = lookup.unreflectConstructor(declaredConstructor).asType(MethodType.methodType(Object.class));
+            } catch (NoSuchMethodException | IllegalAccessException ignored) {
+
+            }
+        }
+        NBTCodec codec = new NBTCodec(type, properties.toArray(new Property[properties.size()]), constructor);
+        if (generate) {
+            codec.generatedParser = NBTCodecGenerator.generate(codec);
+        }
+        return codec;
+    }
+
+    private static Property createProperty(String name, Field field, boolean mutator, Type writeType, MethodHandle getter, Type readType, MethodHandle setter) {
+        if (getter != null && setter != null && writeType == readType && writeType instanceof Class && ((Class<?>) writeType).isPrimitive()) {
+            return new PrimitiveProperty(name, field, mutator, (Class<?>) writeType, getter, setter);
+        }
+        try {
+            return new Property(name, field, mutator, writeType, getter, readType, setter);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid NBT property " + field.getDeclaringClass().getName() + "." + name + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static Method resolveMutator(Class<?> clazz, String name, Class<?>... param) {
+        Method method = null;
+        Class<?> methodClass = clazz;
+        do {
+            try {
+                method = methodClass.getDeclaredMethod(name, param);
+                break;
+            } catch (NoSuchMethodException ignored) {
+
+            }
+        } while ((methodClass = methodClass.getSuperclass()) != null);
+        if (method == null) {
+            String message = clazz.getName() + "." + name + "(" + (param.length == 0 ? "" : param[0] == null ? "null" : param[0].getName()) + ")";
+            LLibrary.LOGGER.fatal(CrashReport.makeCrashReport(new RuntimeException(message), message).getCompleteReport());
+            return null;
+        }
+        method.setAccessible(true);
+        return method;
+    }
+
+    private static String getConventionalSetterName(String name, String setter) {
+        return NBTCodec.getConventionalMutatorName("set", name, setter);
+    }
+
+    private static String getConventionalGetterName(String name, Class<?> type, String getter) {
+        return NBTCodec.getConventionalMutatorName(type == Boolean.class || type == boolean.class ? "is" : "get", name, getter);
+    }
+
+    private static String getConventionalMutatorName(String verb, String name, String mutator) {
+        if (mutator.isEmpty()) {
+            return verb + Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        }
+        return mutator;
+    }
+
+    static void logError(Throwable throwable) {
+        LLibrary.LOGGER.fatal(CrashReport.makeCrashReport(throwable, String.valueOf(throwable.getLocalizedMessage())).getCompleteReport());
+    }
+
+    /**
+     * A single resolved property of a codec. Either accessor may be null if it could not be resolved, in which case
+     * the property is skipped in that direction.
+     */
+    public static class Property {
+        protected final String name;
+        protected final Field field;
+        protected final boolean mutator;
+        protected final Type writeType;
+        protected final Type readType;
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+        private final NBTValueCodec writeCodec;
+        private final NBTValueCodec readCodec;
+
+        Property(String name, Field field, boolean mutator, Type writeType, MethodHandle getter, Type readType, MethodHandle setter) {
+            this.name = name;
+            this.field = field;
+            this.mutator = mutator;
+            this.writeType = writeType;
+            this.readType = readType;
+            this.getter = getter == null ? null : getter.asType(GETTER_TYPE);
+            this.setter = setter == null ? null : setter.asType(SETTER_TYPE);
+            this.writeCodec = writeType == null ? null : NBTValueCodec.create(writeType);
+            this.readCodec = readType == null ? null : NBTValueCodec.create(readType);
+        }
+
+        /**
+         * Write this property of the given object to the compound.
+         *
+         * @param object   the object instance
+         * @param compound the compound to save to
+         */
+        public void save(Object object, NBTTagCompound compound) {
+            NBTBase tag = this.write(object);
+            if (tag != null) {
+                compound.setTag(this.name, tag);
+            }
+        }
+
+        /**
+         * Read this property from the compound into the given object, if present.
+         *
+         * @param object   the object instance
+         * @param compound the compound to load from
+         */
+        public void load(Object object, NBTTagCompound compound) {
+            NBTBase tag = compound.getTag(this.name);
+            if (tag != null) {
+                this.read(object, tag);
+            }
+        }
+
+        protected NBTBase write(Object object) {
+            if (this.getter == null) {
+                return null;
+            }
+            Object value;
+            try {
+                value = this.getter.invokeExact(object);
+            } catch (Throwable e) {
+                NBTCodec.logError(e);
+                return null;
+            }
+            if (value == null) {
+                return null;
+            }
+            return this.writeCodec.write(value);
+        }
+
+        void clear(Object object) {
+            if (this.setter == null) {
+                return;
+            }
+            try {
+                this.setter.invokeExact(object, (Object) null);
+            } catch (Throwable e) {
+                NBTCodec.logError(e);
+            }
+        }
+
+        protected void read(Object object, NBTBase tag) {
+            if (this.setter == null) {
+                return;
+            }
+            try {
+                Object existing = null;
+                if (this.getter != null && this.readCodec.usesExisting()) {
+                    existing = this.getter.invokeExact(object);
+                }
+                Object value = this.readCodec.read(tag, existing);
+                this.setter.invokeExact(object, value);
+            } catch (Throwable e) {
+                NBTCodec.logError(e);
+            }
+        }
+
+        /**
+         * @return the name this property is stored under
+         */
+        public String getName() {
+            return this.name;
+        }
+
+        /**
+         * @return the annotated field
+         */
+        public Field getField() {
+            return this.field;
+        }
+
+        /**
+         * @return true if this property is accessed through a getter and setter instead of its field
+         */
+        public boolean isMutator() {
+            return this.mutator;
+        }
+
+        /**
+         * @return true if this property can be written, false if its getter could not be resolved
+         */
+        public boolean isWritable() {
+            return this.getter != null;
+        }
+    }
+
+    /**
+     * A property of a primitive type. Values are passed between the accessors and the primitive specialized parsers
+     * without boxing.
+     */
+    public static class PrimitiveProperty extends Property {
+        private final Class<?> primitiveType;
+        private final INBTParser primitiveParser;
+        private final MethodHandle primitiveGetter;
+        private final MethodHandle primitiveSetter;
+
+        PrimitiveProperty(String name, Field field, boolean mutator, Class<?> type, MethodHandle getter, MethodHandle setter) {
+            super(name, field, mutator, type, getter, type, setter);
+            this.primitiveType = type;
+            this.primitiveParser = PrimitiveNBTParsers.getPrimitiveParser(type);
+            this.primitiveGetter = getter.asType(MethodType.methodType(type, Object.class));
+            this.primitiveSetter = setter.asType(MethodType.methodType(void.class, Object.class, type));
+        }
+
+        @Override
+        protected NBTBase write(Object object) {
+            try {
+                if (this.primitiveType == int.class) {
+                    return ((IIntNBTParser) this.primitiveParser).parseIntValue((int) this.primitiveGetter.invokeExact(object));
+                } else if (this.primitiveType == float.class) {
+                    return ((IFloatNBTParser) this.primitiveParser).parseFloatValue((float) this.primitiveGetter.invokeExact(object));
+                } else if (this.primitiveType == boolean.class) {
+                    return ((IBooleanNBTParser) this.primitiveParser).parseBooleanValue((boolean) this.primitiveGetter.invokeExact(object));
+                } else if (this.primitiveType == double.class) {
+                    return ((IDoubleNBTParser) this.primitiveParser).parseDoubleValue((double) this.primitiveGetter.invokeExact(object));
+                } else if (this.primitiveType == long.class) {
+                    return ((ILongNBTParser) this.primitiveParser).parseLongValue((long) this.primitiveGetter.invokeExact(object));
+                } else if (this.primitiveType == byte.class) {
+                    return ((IByteNBTParser) this.primitiveParser).parseByteValue((byte) this.primitiveGetter.invokeExact(object));
+                } else if (this.primitiveType == short.class) {
+                    return ((IShortNBTParser) this.primitiveParser).parseShortValue((short) this.primitiveGetter.invokeExact(object));
+                } else {
+                    return ((ICharNBTParser) this.primitiveParser).parseCharValue((char) this.primitiveGetter.invokeExact(object));
+                }
+            } catch (Throwable e) {
+                NBTCodec.logError(e);
+                return null;
+            }
+        }
+
+        /**
+         * @param object the object instance
+         * @return the raw bits of this property's current value, widened to a long
+         */
+        long readRawBits(Object object) throws Throwable {
+            if (this.primitiveType == int.class) {
+                return (int) this.primitiveGetter.invokeExact(object);
+            } else if (this.primitiveType == float.class) {
+                return Float.floatToRawIntBits((float) this.primitiveGetter.invokeExact(object));
+            } else if (this.primitiveType == boolean.class) {
+                return (boolean) this.primitiveGetter.invokeExact(object) ? 1 : 0;
+            } else if (this.primitiveType == double.class) {
+                return Double.doubleToRawLongBits((double) this.primitiveGetter.invokeExact(object));
+            } else if (this.primitiveType == long.class) {
+                return (long) this.primitiveGetter.invokeExact(object);
+            } else if (this.primitiveType == byte.class) {
+                return (byte) this.primitiveGetter.invokeExact(object);
+            } else if (this.primitiveType == short.class) {
+                return (short) this.primitiveGetter.invokeExact(object);
+            } else {
+                return (char) this.primitiveGetter.invokeExact(object);
+            }
+        }
+
+        @Override
+        protected void read(Object object, NBTBase tag) {
+            try {
+                if (this.primitiveType == int.class) {
+                    this.primitiveSetter.invokeExact(object, ((IIntNBTParser) this.primitiveParser).parseIntTag(tag));
+                } else if (this.primitiveType == float.class) {
+                    this.primitiveSetter.invokeExact(object, ((IFloatNBTParser) this.primitiveParser).parseFloatTag(tag));
+                } else if (this.primitiveType == boolean.class) {
+                    this.primitiveSetter.invokeExact(object, ((IBooleanNBTParser) this.primitiveParser).parseBooleanTag(tag));
+                } else if (this.primitiveType == double.class) {
+                    this.primitiveSetter.invokeExact(object, ((IDoubleNBTParser) this.primitiveParser).parseDoubleTag(tag));
+                } else if (this.primitiveType == long.class) {
+                    this.primitiveSetter.invokeExact(object, ((ILongNBTParser) this.primitiveParser).parseLongTag(tag));
+                } else if (this.primitiveType == byte.class) {
+                    this.primitiveSetter.invokeExact(object, ((IByteNBTParser) this.primitiveParser).parseByteTag(tag));
+                } else if (this.primitiveType == short.class) {
+                    this.primitiveSetter.invokeExact(object, ((IShortNBTParser) this.primitiveParser).parseShortTag(tag));
+                } else {
+                    this.primitiveSetter.invokeExact(object, ((ICharNBTParser) this.primitiveParser).parseCharTag(tag));
+                }
+            } catch (Throwable e) {
+                NBTCodec.logError(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package net.ilexiconn.llibrary.server.nbt;
+
+import net.ilexiconn.llibrary.LLibrary;
+import net.minecraft.nbt.NBTTagCompound;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import sun.misc.Unsafe;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates a dedicated {@link GeneratedNBTParser} for a {@link NBTCodec}. Primitive and string fields annotated with
+ * {@link NBTProperty} are read and written directly, without boxing or going through {@link net.ilexiconn.llibrary.server.nbt.parser.NBTParsers}.
+ * All other properties are delegated to the reflective codec, so the output is identical to it.
+ * <p>
+ * The generated code never references Minecraft members by name, it calls the static helpers in this class instead.
+ * This keeps it valid in both the development and the obfuscated environment.
+ *
+ * @see NBTHandler#setCodecGeneration(boolean)
+ * @since 1.6.0
+ */
+public final class NBTCodecGenerator implements Opcodes {
+    public static final Unsafe UNSAFE = NBTCodecGenerator.findUnsafe();
+
+    private static final String GENERATOR = Type.getInternalName(NBTCodecGenerator.class);
+    private static final String PARSER = Type.getInternalName(GeneratedNBTParser.class);
+    private static final String PROPERTY = Type.getInternalName(NBTCodec.Property.class);
+    private static final String CODEC_DESC = Type.getDescriptor(NBTCodec.class);
+    private static final String COMPOUND_DESC = Type.getDescriptor(NBTTagCompound.class);
+    private static final String UNSAFE_NAME = Type.getInternalName(Unsafe.class);
+    private static final String UNSAFE_DESC = Type.getDescriptor(Unsafe.class);
+
+    private static final AtomicInteger ID = new AtomicInteger();
+
+    private NBTCodecGenerator() {
+    }
+
+    /**
+     * Generate a parser for the given codec.
+     *
+     * @param codec the reflective codec
+     * @return the generated parser, or null if it could not be generated
+     */
+    public static GeneratedNBTParser generate(NBTCodec codec) {
+        if (UNSAFE == null) {
+            return null;
+        }
+        Class<?> type = codec.getType();
+        String name = "net/ilexiconn/llibrary/server/nbt/generated/" + type.getName().replace('.', '_') + "$NBTParser$" + ID.getAndIncrement();
+        try {
+            byte[] bytes = NBTCodecGenerator.generateClass(name, codec.getProperties());
+            ClassLoader parent = type.getClassLoader() != null ? type.getClassLoader() : NBTCodecGenerator.class.getClassLoader();
+            Class<?> generated = new GeneratedClassLoader(parent).define(name.replace('/', '.'), bytes);
+            return (GeneratedNBTParser) generated.getConstructor(NBTCodec.class).newInstance(codec);
+        } catch (Throwable e) {
+            LLibrary.LOGGER.error("Failed to generate NBT parser for " + type.getName(), e);
+            return null;
+        }
+    }
+
+    private static byte[] generateClass(String name, NBTCodec.Property[] properties) {
+        ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        classWriter.visit(V1_6, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, name, null, PARSER, null);
+
+        MethodVisitor init = classWriter.visitMethod(ACC_PUBLIC, "<init>", "(" + CODEC_DESC + ")V", null, null);
+        init.visitCode();
+        init.visitVarInsn(ALOAD, 0);
+        init.visitVarInsn(ALOAD, 1);
+        init.visitMethodInsn(INVOKESPECIAL, PARSER, "<init>", "(" + CODEC_DESC + ")V", false);
+        init.visitInsn(RETURN);
+        init.visitMaxs(0, 0);
+        init.visitEnd();
+
+        MethodVisitor save = classWriter.visitMethod(ACC_PUBLIC, "save", "(Ljava/lang/Object;" + COMPOUND_DESC + ")V", null, null);
+        save.visitCode();
+        for (int i = 0; i < properties.length; i++) {
+            NBTCodec.Property property = properties[i];
+            Kind kind = Kind.of(property);
+            if (kind != null) {
+                save.visitVarInsn(ALOAD, 2);
+                save.visitLdcInsn(property.getName());
+                save.visitFieldInsn(GETSTATIC, GENERATOR, "UNSAFE", UNSAFE_DESC);
+                save.visitVarInsn(ALOAD, 1);
+                save.visitLdcInsn(UNSAFE.objectFieldOffset(property.getField()));
+                save.visitMethodInsn(INVOKEVIRTUAL, UNSAFE_NAME, "get" + kind.unsafeName, "(Ljava/lang/Object;J)" + kind.unsafeDesc, false);
+                if (kind == Kind.STRING) {
+                    save.visitTypeInsn(CHECKCAST, "java/lang/String");
+                }
+                save.visitMethodInsn(INVOKESTATIC, GENERATOR, "write" + kind.suffix, "(" + COMPOUND_DESC + "Ljava/lang/String;" + kind.desc + ")V", false);
+            } else {
+                NBTCodecGenerator.loadProperty(save, i);
+                save.visitVarInsn(ALOAD, 1);
+                save.visitVarInsn(ALOAD, 2);
+                save.visitMethodInsn(INVOKEVIRTUAL, PROPERTY, "save", "(Ljava/lang/Object;" + COMPOUND_DESC + ")V", false);
+            }
+        }
+        save.visitInsn(RETURN);
+        save.visitMaxs(0, 0);
+        save.visitEnd();
+
+        MethodVisitor load = classWriter.visitMethod(ACC_PUBLIC, "load", "(Ljava/lang/Object;" + COMPOUND_DESC + ")V", null, null);
+        load.visitCode();
+        for (int i = 0; i < properties.length; i++) {
+            NBTCodec.Property property = properties[i];
+            Kind kind = Kind.of(property);
+            if (kind != null) {
+                Label skip = new Label();
+                load.visitVarInsn(ALOAD, 2);
+                load.visitLdcInsn(property.getName());
+                NBTCodecGenerator.pushInt(load, kind.tagType);
+                load.visitMethodInsn(INVOKESTATIC, GENERATOR, "hasTag", "(" + COMPOUND_DESC + "Ljava/lang/String;I)Z", false);
+                load.visitJumpInsn(IFEQ, skip);
+                load.visitFieldInsn(GETSTATIC, GENERATOR, "UNSAFE", UNSAFE_DESC);
+                load.visitVarInsn(ALOAD, 1);
+                load.visitLdcInsn(UNSAFE.objectFieldOffset(property.getField()));
+                load.visitVarInsn(ALOAD, 2);
+                load.visitLdcInsn(property.getName());
+                load.visitMethodInsn(INVOKESTATIC, GENERATOR, "read" + kind.suffix, "(" + COMPOUND_DESC + "Ljava/lang/String;)" + kind.desc, false);
+                load.visitMethodInsn(INVOKEVIRTUAL, UNSAFE_NAME, "put" + kind.unsafeName, "(Ljava/lang/Object;J" + kind.unsafeDesc + ")V", false);
+                load.visitLabel(skip);
+            } else {
+                NBTCodecGenerator.loadProperty(load, i);
+                load.visitVarInsn(ALOAD, 1);
+                load.visitVarInsn(ALOAD, 2);
+                load.visitMethodInsn(INVOKEVIRTUAL, PROPERTY, "load", "(Ljava/lang/Object;" + COMPOUND_DESC + ")V", false);
+            }
+        }
+        load.visitInsn(RETURN);
+        load.visitMaxs(0, 0);
+        load.visitEnd();
+
+        classWriter.visitEnd();
+        return classWriter.toByteArray();
+    }
+
+    private static void loadProperty(MethodVisitor method, int index) {
+        method.visitVarInsn(ALOAD, 0);
+        method.visitFieldInsn(GETFIELD, PARSER, "properties", "[L" + PROPERTY + ";");
+        NBTCodecGenerator.pushInt(method, index);
+        method.visitInsn(AALOAD);
+    }
+
+    private static void pushInt(MethodVisitor method, int value) {
+        if (value >= -1 && value <= 5) {
+            method.visitInsn(ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            method.visitIntInsn(BIPUSH, value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            method.visitIntInsn(SIPUSH, value);
+        } else {
+            method.visitLdcInsn(value);
+        }
+    }
+
+    private static Unsafe findUnsafe() {
+        try {
+            Field field = Unsafe.class.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return (Unsafe) field.get(null);
+        } catch (Exception e) {
+            LLibrary.LOGGER.warn("Unable to access Unsafe, NBT parser generation is disabled", e);
+            return null;
+        }
+    }
+
+    public static boolean hasTag(NBTTagCompound compound, String name, int type) {
+        return compound.hasKey(name, type);
+    }
+
+    public static void writeBoolean(NBTTagCompound compound, String name, boolean value) {
+        compound.setBoolean(name, value);
+    }
+
+    public static void writeByte(NBTTagCompound compound, String name, byte value) {
+        compound.setByte(name, value);
+    }
+
+    public static void writeShort(NBTTagCompound compound, String name, short value) {
+        compound.setShort(name, value);
+    }
+
+    public static void writeChar(NBTTagCompound compound, String name, char value) {
+        compound.setShort(name, (short) value);
+    }
+
+    public static void writeInt(NBTTagCompound compound, String name, int value) {
+        compound.setInteger(name, value);
+    }
+
+    public static void writeLong(NBTTagCompound compound, String name, long value) {
+        compound.setLong(name, value);
+    }
+
+    public static void writeFloat(NBTTagCompound compound, String name, float value) {
+        compound.setFloat(name, value);
+    }
+
+    public static void writeDouble(NBTTagCompound compound, String name, double value) {
+        compound.setDouble(name, value);
+    }
+
+    public static void writeString(NBTTagCompound compound, String name, String value) {
+        if (value != null) {
+            compound.setString(name, value);
+        }
+    }
+
+    public static boolean readBoolean(NBTTagCompound compound, String name) {
+        return compound.getBoolean(name);
+    }
+
+    public static byte readByte(NBTTagCompound compound, String name) {
+        return compound.getByte(name);
+    }
+
+    public static short readShort(NBTTagCompound compound, String name) {
+        return compound.getShort(name);
+    }
+
+    public static char readChar(NBTTagCompound compound, String name) {
+        return (char) compound.getShort(name);
+    }
+
+    public static int readInt(NBTTagCompound compound, String name) {
+        return compound.getInteger(name);
+    }
+
+    public static long readLong(NBTTagCompound compound, String name) {
+        return compound.getLong(name);
+    }
+
+    public static float readFloat(NBTTagCompound compound, String name) {
+        return compound.getFloat(name);
+    }
+
+    public static double readDouble(NBTTagCompound compound, String name) {
+        return compound.getDouble(name);
+    }
+
+    public static String readString(NBTTagCompound compound, String name) {
+        return compound.getString(name);
+    }
+
+    private enum Kind {
+        BOOLEAN(boolean.class, "Boolean", "Z", 1),
+        BYTE(byte.class, "Byte", "B", 1),
+        SHORT(short.class, "Short", "S", 2),
+        CHAR(char.class, "Char", "C", 2),
+        INT(int.class, "Int", "I", 3),
+        LONG(long.class, "Long", "J", 4),
+        FLOAT(float.class, "Float", "F", 5),
+        DOUBLE(double.class, "Double", "D", 6),
+        STRING(String.class, "String", "Ljava/lang/String;", 8);
+
+        private final Class<?> type;
+        private final String suffix;
+        private final String desc;
+        private final String unsafeName;
+        private final String unsafeDesc;
+        private final int tagType;
+
+        Kind(Class<?> type, String suffix, String desc, int tagType) {
+            this.type = type;
+            this.suffix = suffix;
+            this.desc = desc;
+            this.unsafeName = type.isPrimitive() ? suffix : "Object";
+            this.unsafeDesc = type.isPrimitive() ? desc : "Ljava/lang/Object;";
+            this.tagType = tagType;
+        }
+
+        /**
+         * @return the kind for direct field access, or null if the property has to go through the reflective codec
+         */
+        static Kind of(NBTCodec.Property property) {
+            if (property.isMutator()) {
+                return null;
+            }
+            int modifiers = property.getField().getModifiers();
+            if (Modifier.isStatic(modifiers) || Modifier.isVolatile(modifiers)) {
+                return null;
+            }
+            for (Kind kind : Kind.values()) {
+                if (kind.type == property.getField().getType()) {
+                    return kind;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static class GeneratedClassLoader extends ClassLoader {
+        GeneratedClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        Class<?> define(String name, byte[] bytes) {
+            return this.defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
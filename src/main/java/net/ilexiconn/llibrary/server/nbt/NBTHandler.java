@@ -1,16 +1,18 @@
 package net.ilexiconn.llibrary.server.nbt;
 
-import net.ilexiconn.llibrary.LLibrary;
+import net.ilexiconn.llibrary.server.nbt.parser.EnumNBTParser;
 import net.ilexiconn.llibrary.server.nbt.parser.INBTParser;
 import net.ilexiconn.llibrary.server.nbt.parser.NBTParsers;
-import net.minecraft.crash.CrashReport;
 import net.minecraft.nbt.NBTBase;
 import net.minecraft.nbt.NBTTagCompound;
 
-import java.lang.reflect.Field;
-import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author pau101
@@ -20,193 +22,122 @@ public enum NBTHandler {
     INSTANCE;
 
     private Map<Class<?>, INBTParser<?, ?>> nbtParserMap = new HashMap<>();
+    private Map<Class<?>, NBTCodec> codecMap = new ConcurrentHashMap<>();
+    private volatile ClassValue<Optional<INBTParser<?, ?>>> parserCache = this.createParserCache();
+    private boolean codecGeneration;
 
     public <V, T extends NBTBase> void registerNBTParser(Class<V> type, INBTParser<V, T> nbtParser) {
         this.nbtParserMap.put(type, nbtParser);
+        this.parserCache = this.createParserCache();
+        this.codecMap.clear();
     }
 
     public void loadNBTData(Object object, NBTTagCompound compound) {
-        Class<?> clazz = object.getClass();
-        do {
-            Field[] fields = clazz.getDeclaredFields();
-            for (Field field : fields) {
-                if (field.isAnnotationPresent(NBTProperty.class)) {
-                    field.setAccessible(true);
-                    String name = field.getAnnotation(NBTProperty.class).name();
-                    if (name.isEmpty()) {
-                        name = field.getName();
-                    }
-                    readFromNBTToField(object, field, name, compound);
-                } else if (field.isAnnotationPresent(NBTMutatorProperty.class)) {
-                    NBTMutatorProperty mutatorProperty = field.getAnnotation(NBTMutatorProperty.class);
-                    String name = mutatorProperty.name();
-                    if (name.isEmpty()) {
-                        name = field.getName();
-                    }
-                    Class<?> type = mutatorProperty.type();
-                    Method setter = getSetter(clazz, name, type, mutatorProperty.setter());
-                    readFromNBTToSetter(object, setter, name, compound);
-                }
-            }
-        } while ((clazz = clazz.getSuperclass()) != null);
+        this.getCodec(object.getClass()).load(object, compound);
     }
 
     public void saveNBTData(Object object, NBTTagCompound compound) {
-        Class<?> clazz = object.getClass();
-        do {
-            Field[] fields = clazz.getDeclaredFields();
-            for (Field field : fields) {
-                if (field.isAnnotationPresent(NBTProperty.class)) {
-                    field.setAccessible(true);
-                    String name = field.getAnnotation(NBTProperty.class).name();
-                    if (name.isEmpty()) {
-                        name = field.getName();
-                    }
-                    NBTBase tag = writeFieldToNBT(object, field);
-                    if (tag != null) {
-                        compound.setTag(name, tag);
-                    }
-                } else if (field.isAnnotationPresent(NBTMutatorProperty.class)) {
-                    NBTMutatorProperty mutatorProperty = field.getAnnotation(NBTMutatorProperty.class);
-                    String name = mutatorProperty.name();
-                    if (name.isEmpty()) {
-                        name = field.getName();
-                    }
-                    Class<?> type = mutatorProperty.type();
-                    Method getter = getGetter(clazz, name, type, mutatorProperty.getter());
-                    NBTBase tag = writeGetterValueToNBT(object, getter);
-                    if (tag != null) {
-                        compound.setTag(name, tag);
-                    }
-                }
-            }
-        } while ((clazz = clazz.getSuperclass()) != null);
-    }
-
-    public <V, T extends NBTBase> INBTParser<V, T> getParserForType(Class<V> type) {
-        INBTParser<V, T> nbtParser = NBTParsers.getBuiltinParser(type);
-        if (nbtParser != null) {
-            return nbtParser;
-        } else if (this.nbtParserMap.containsKey(type)) {
-            return (INBTParser<V, T>) this.nbtParserMap.get(type);
-        } else {
-            return null;
+        this.getCodec(object.getClass()).save(object, compound);
+    }
+
+    /**
+     * Create a change tracker for the given object. The tracker writes only the properties that changed since its
+     * last save.
+     *
+     * @param object the object instance
+     * @return a new change tracker
+     * @throws IllegalArgumentException if a property of the object is stored under the reserved name "__removed"
+     */
+    public NBTChangeTracker createChangeTracker(Object object) {
+        return new NBTChangeTracker(object, this.getCodec(object.getClass()));
+    }
+
+    /**
+     * Get the serialization plan for a class. Codecs are built on first use and cached until another parser is
+     * registered.
+     *
+     * @param type the class
+     * @return the codec for the given class
+     */
+    public NBTCodec getCodec(Class<?> type) {
+        NBTCodec codec = this.codecMap.get(type);
+        if (codec == null) {
+            codec = NBTCodec.create(type, this.codecGeneration);
+            this.codecMap.put(type, codec);
         }
-    }
-
-    private <V, T extends NBTBase> T writeFieldToNBT(V object, Field field) {
-        V value;
-        try {
-            value = (V) field.get(object);
-        } catch (Exception e) {
-            LLibrary.LOGGER.fatal(CrashReport.makeCrashReport(e.getCause(), e.getCause().getLocalizedMessage()).getCompleteReport());
-            return null;
+        return codec;
+    }
+
+    /**
+     * Enable or disable generated codecs. When enabled, a dedicated parser is generated with ASM for every annotated
+     * class, which reads and writes primitive fields directly. The generated parsers produce the same output as the
+     * reflective codecs.
+     *
+     * @param codecGeneration true to generate parsers
+     */
+    public void setCodecGeneration(boolean codecGeneration) {
+        if (this.codecGeneration != codecGeneration) {
+            this.codecGeneration = codecGeneration;
+            this.codecMap.clear();
         }
-        return this.writeToNBT((Class<V>) field.getType(), value);
     }
 
-    private <V, T extends NBTBase> T writeGetterValueToNBT(V object, Method getter) {
-        V value;
-        try {
-            value = (V) getter.invoke(object);
-        } catch (Exception e) {
-            LLibrary.LOGGER.fatal(CrashReport.makeCrashReport(e.getCause(), e.getCause().getLocalizedMessage()).getCompleteReport());
-            return null;
-        }
-        return this.writeToNBT((Class<V>) getter.getReturnType(), value);
+    /**
+     * @return true if parsers are generated for annotated classes
+     */
+    public boolean isCodecGeneration() {
+        return this.codecGeneration;
     }
 
-    private <V, T extends NBTBase> T writeToNBT(Class<V> type, V value) {
-        if (value == null) {
-            return null;
-        }
-        INBTParser<V, T> nbtParser = this.getParserForType(type);
-        if (nbtParser != null) {
-            return nbtParser.parseValue(value);
-        } else {
-            NBTTagCompound compound = new NBTTagCompound();
-            this.saveNBTData(value, compound);
-            return (T) compound;
-        }
+    /**
+     * Get the parser for a type. Builtin parsers take precedence over registered ones. If no parser is registered
+     * for the type itself, the parser of its closest registered superclass or interface is used. The result is
+     * computed once per class and cached until another parser is registered.
+     *
+     * @param type the value type
+     * @param <V>  the value type
+     * @param <T>  the tag type
+     * @return the parser, null if there is none for the given type
+     */
+    public <V, T extends NBTBase> INBTParser<V, T> getParserForType(Class<V> type) {
+        return (INBTParser<V, T>) this.parserCache.get(type).orElse(null);
     }
 
-    private void readFromNBTToField(Object object, Field field, String name, NBTTagCompound compound) {
-        NBTBase valueNBT = compound.getTag(name);
-        if (valueNBT == null) {
-            return;
-        }
-        Object value = readFromNBT(field.getType(), valueNBT);
-        try {
-            field.set(object, value);
-        } catch (Exception e) {
-            LLibrary.LOGGER.fatal(CrashReport.makeCrashReport(e.getCause(), e.getCause().getLocalizedMessage()).getCompleteReport());
-        }
+    private ClassValue<Optional<INBTParser<?, ?>>> createParserCache() {
+        return new ClassValue<Optional<INBTParser<?, ?>>>() {
+            @Override
+            protected Optional<INBTParser<?, ?>> computeValue(Class<?> type) {
+                return Optional.ofNullable(NBTHandler.this.resolveParser(type));
+            }
+        };
     }
 
-    private void readFromNBTToSetter(Object object, Method setter, String name, NBTTagCompound compound) {
-        NBTBase valueNBT = compound.getTag(name);
-        if (valueNBT == null) {
-            return;
+    private INBTParser<?, ?> resolveParser(Class<?> type) {
+        INBTParser<?, ?> nbtParser = NBTParsers.getBuiltinParser(type);
+        if (nbtParser != null) {
+            return nbtParser;
         }
-        Object value = readFromNBT(setter.getParameters()[0].getType(), valueNBT);
-        try {
-            setter.invoke(object, value);
-        } catch (Exception e) {
-            LLibrary.LOGGER.fatal(CrashReport.makeCrashReport(e.getCause(), e.getCause().getLocalizedMessage()).getCompleteReport());
+        for (Class<?> clazz = type; clazz != null; clazz = clazz.getSuperclass()) {
+            nbtParser = this.nbtParserMap.get(clazz);
+            if (nbtParser != null) {
+                return nbtParser;
+            }
         }
-    }
-
-    private <V, T extends NBTBase> V readFromNBT(Class<V> type, T tag) {
-        INBTParser<V, T> nbtParser = this.getParserForType(type);
-        if (nbtParser != null) {
-            return nbtParser.parseTag(tag);
-        } else {
-            return null;
+        Deque<Class<?>> interfaces = new ArrayDeque<>();
+        for (Class<?> clazz = type; clazz != null; clazz = clazz.getSuperclass()) {
+            Collections.addAll(interfaces, clazz.getInterfaces());
         }
-    }
-
-    private Method getSetter(Class<?> clazz, String name, Class<?> type, String setter) {
-        String setterName = getConventionalSetterName(name, setter);
-        return resolveMutator(clazz, setterName, type);
-    }
-
-    private Method getGetter(Class<?> clazz, String name, Class<?> type, String getter) {
-        String getterName = getConventionalGetterName(name, type, getter);
-        return resolveMutator(clazz, getterName);
-    }
-
-    private Method resolveMutator(Class<?> clazz, String name, Class<?>... param) {
-        Method method = null;
-        Class<?> methodClass = clazz;
-        do {
-            try {
-                method = methodClass.getDeclaredMethod(name, param);
-                break;
-            } catch (NoSuchMethodException ignored) {
-
+        while (!interfaces.isEmpty()) {
+            Class<?> interfaceClass = interfaces.poll();
+            nbtParser = this.nbtParserMap.get(interfaceClass);
+            if (nbtParser != null) {
+                return nbtParser;
             }
-        } while ((methodClass = methodClass.getSuperclass()) != null);
-        if (method == null) {
-            String message = clazz.getName() + "." + name + "(" + (param.length == 0 ? "" : param[0] == null ? "null" : param[0].getName()) + ")";
-            LLibrary.LOGGER.fatal(CrashReport.makeCrashReport(new RuntimeException(message), message));
-            return null;
+            Collections.addAll(interfaces, interfaceClass.getInterfaces());
         }
-        method.setAccessible(true);
-        return method;
-    }
-
-    private String getConventionalSetterName(String name, String setter) {
-        return getConventionalMutatorName("set", name, setter);
-    }
-
-    private String getConventionalGetterName(String name, Class<?> type, String getter) {
-        return getConventionalMutatorName(type == Boolean.class || type == boolean.class ? "is" : "get", name, getter);
-    }
-
-    private String getConventionalMutatorName(String verb, String name, String mutator) {
-        if (mutator.isEmpty()) {
-            return verb + Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        if (Enum.class.isAssignableFrom(type) && type != Enum.class) {
+            return new EnumNBTParser(type.isEnum() ? type : type.getSuperclass(), false);
         }
-        return mutator;
+        return null;
     }
 }
@@ -0,0 +1,539 @@
+package net.ilexiconn.llibrary.server.nbt;
+
+import net.ilexiconn.llibrary.server.nbt.parser.INBTParser;
+import net.minecraft.nbt.NBTBase;
+import net.minecraft.nbt.NBTTagByteArray;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.nbt.NBTTagIntArray;
+import net.minecraft.nbt.NBTTagList;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Converts the value of a single property from and to NBT, based on the property's generic type. Types with a parser
+ * are converted by the parser, collections and maps are converted element by element and all other objects are
+ * written as nested compounds. Properties with untyped values, like raw collections, are rejected.
+ *
+ * @since 1.6.0
+ */
+abstract class NBTValueCodec {
+    private static final String LENGTH = "Length";
+    private static final String ELEMENTS = "Elements";
+    private static final String INDEX = "Index";
+    private static final String VALUE = "Value";
+
+    /**
+     * @param value the value, never null
+     * @return the tag, or null if nothing should be written
+     */
+    abstract NBTBase write(Object value);
+
+    /**
+     * @param tag      the tag
+     * @param existing the current value of the property, or null if unknown. Mutable values are loaded into it when
+     *                 possible
+     * @return the value
+     */
+    abstract Object read(NBTBase tag, Object existing);
+
+    /**
+     * @return true if {@link #read(NBTBase, Object)} makes use of the current value
+     */
+    boolean usesExisting() {
+        return false;
+    }
+
+    static NBTValueCodec create(Type type) {
+        Class<?> rawType = NBTValueCodec.getRawType(type);
+        INBTParser<?, ?> parser = NBTHandler.INSTANCE.getParserForType(rawType);
+        if (parser != null) {
+            return new ParserCodec(parser);
+        } else if (Collection.class.isAssignableFrom(rawType)) {
+            Type elementType = NBTValueCodec.getTypeArgument(type, 0);
+            return new CollectionCodec(rawType, NBTValueCodec.getRawType(elementType), NBTValueCodec.create(elementType));
+        } else if (Map.class.isAssignableFrom(rawType)) {
+            Type keyType = NBTValueCodec.getTypeArgument(type, 0);
+            Type valueType = NBTValueCodec.getTypeArgument(type, 1);
+            return new MapCodec(rawType, NBTValueCodec.getRawType(keyType), NBTValueCodec.create(keyType), NBTValueCodec.create(valueType));
+        } else if (rawType.isArray()) {
+            Type componentType = type instanceof GenericArrayType ? ((GenericArrayType) type).getGenericComponentType() : rawType.getComponentType();
+            return new ArrayCodec(rawType.getComponentType(), NBTValueCodec.create(componentType));
+        } else if (rawType == Object.class) {
+            throw new IllegalArgumentException("values of type " + type.getTypeName() + " can't be stored, declare a more specific type");
+        }
+        return new CompoundCodec(rawType);
+    }
+
+    /**
+     * Pass every element of a tag written by {@link ElementWriter} to the consumer in order, with null for missing
+     * elements.
+     *
+     * @return the amount of elements, or -1 if the tag doesn't hold elements
+     */
+    private static int readElements(NBTBase tag, ObjIntConsumer<NBTBase> consumer) {
+        if (tag instanceof NBTTagList) {
+            List<?> tagList = ((NBTTagList) tag).tagList;
+            int length = tagList.size();
+            for (int i = 0; i < length; i++) {
+                consumer.accept((NBTBase) tagList.get(i), i);
+            }
+            return length;
+        } else if (tag instanceof NBTTagCompound && ((NBTTagCompound) tag).hasKey(LENGTH)) {
+            NBTTagCompound compound = (NBTTagCompound) tag;
+            int length = Math.max(0, compound.getInteger(LENGTH));
+            NBTTagList elements = compound.getTagList(ELEMENTS, 10);
+            int next = 0;
+            for (int i = 0; i < elements.tagCount(); i++) {
+                NBTTagCompound element = elements.getCompoundTagAt(i);
+                int index = element.getInteger(INDEX);
+                if (index < next || index >= length) {
+                    continue;
+                }
+                while (next < index) {
+                    consumer.accept(null, next++);
+                }
+                consumer.accept(element.getTag(VALUE), next++);
+            }
+            while (next < length) {
+                consumer.accept(null, next++);
+            }
+            return length;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the amount of elements held by a tag written by {@link ElementWriter}, or -1 if the tag doesn't hold
+     * elements
+     */
+    private static int getElementCount(NBTBase tag) {
+        if (tag instanceof NBTTagList) {
+            return ((NBTTagList) tag).tagCount();
+        } else if (tag instanceof NBTTagCompound && ((NBTTagCompound) tag).hasKey(LENGTH)) {
+            return Math.max(0, ((NBTTagCompound) tag).getInteger(LENGTH));
+        }
+        return -1;
+    }
+
+    private static Class<?> getRawType(Type type) {
+        if (type instanceof Class) {
+            return (Class<?>) type;
+        } else if (type instanceof ParameterizedType) {
+            return NBTValueCodec.getRawType(((ParameterizedType) type).getRawType());
+        } else if (type instanceof GenericArrayType) {
+            return Array.newInstance(NBTValueCodec.getRawType(((GenericArrayType) type).getGenericComponentType()), 0).getClass();
+        } else if (type instanceof WildcardType) {
+            return NBTValueCodec.getRawType(((WildcardType) type).getUpperBounds()[0]);
+        } else if (type instanceof TypeVariable) {
+            return NBTValueCodec.getRawType(((TypeVariable<?>) type).getBounds()[0]);
+        }
+        return Object.class;
+    }
+
+    private static Type getTypeArgument(Type type, int index) {
+        if (type instanceof ParameterizedType) {
+            Type[] arguments = ((ParameterizedType) type).getActualTypeArguments();
+            if (index < arguments.length) {
+                return arguments[index];
+            }
+        }
+        return Object.class;
+    }
+
+    private static Constructor<?> getConstructor(Class<?> type) {
+        if (type.isInterface() || Modifier.isAbstract(type.getModifiers())) {
+            return null;
+        }
+        try {
+            Constructor<?> constructor = type.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return constructor;
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static Object newInstance(Constructor<?> constructor) {
+        try {
+            return constructor.newInstance();
+        } catch (ReflectiveOperationException e) {
+            NBTCodec.logError(e);
+            return null;
+        }
+    }
+
+    private static class ParserCodec extends NBTValueCodec {
+        private final INBTParser parser;
+
+        ParserCodec(INBTParser<?, ?> parser) {
+            this.parser = parser;
+        }
+
+        @Override
+        NBTBase write(Object value) {
+            return this.parser.parseValue(value);
+        }
+
+        @Override
+        Object read(NBTBase tag, Object existing) {
+            return this.parser.parseTag(tag);
+        }
+    }
+
+    private static class CompoundCodec extends NBTValueCodec {
+        private final Class<?> type;
+
+        CompoundCodec(Class<?> type) {
+            this.type = type;
+        }
+
+        @Override
+        NBTBase write(Object value) {
+            NBTTagCompound compound = new NBTTagCompound();
+            NBTHandler.INSTANCE.saveNBTData(value, compound);
+            return compound;
+        }
+
+        @Override
+        Object read(NBTBase tag, Object existing) {
+            if (!(tag instanceof NBTTagCompound)) {
+                return existing;
+            }
+            Object value = existing != null ? existing : NBTHandler.INSTANCE.getCodec(this.type).newInstance();
+            if (value != null) {
+                NBTHandler.INSTANCE.loadNBTData(value, (NBTTagCompound) tag);
+            }
+            return value;
+        }
+
+        @Override
+        boolean usesExisting() {
+            return true;
+        }
+    }
+
+    private static class CollectionCodec extends NBTValueCodec {
+        private final Class<?> type;
+        private final Class<?> elementType;
+        private final NBTValueCodec elementCodec;
+        private final Constructor<?> constructor;
+
+        CollectionCodec(Class<?> type, Class<?> elementType, NBTValueCodec elementCodec) {
+            this.type = type;
+            this.elementType = elementType;
+            this.elementCodec = elementCodec;
+            this.constructor = NBTValueCodec.getConstructor(type);
+        }
+
+        @Override
+        NBTBase write(Object value) {
+            Collection<?> collection = (Collection<?>) value;
+            if (this.elementType == Integer.class || this.elementType == Byte.class) {
+                NBTBase packed = this.writePacked(collection);
+                if (packed != null) {
+                    return packed;
+                }
+            }
+            ElementWriter writer = new ElementWriter();
+            for (Object element : collection) {
+                writer.add(element != null ? this.elementCodec.write(element) : null);
+            }
+            return writer.finish();
+        }
+
+        private NBTBase writePacked(Collection<?> collection) {
+            int index = 0;
+            if (this.elementType == Integer.class) {
+                int[] array = new int[collection.size()];
+                for (Object element : collection) {
+                    if (element == null) {
+                        return null;
+                    }
+                    array[index++] = (Integer) element;
+                }
+                return new NBTTagIntArray(array);
+            } else {
+                byte[] array = new byte[collection.size()];
+                for (Object element : collection) {
+                    if (element == null) {
+                        return null;
+                    }
+                    array[index++] = (Byte) element;
+                }
+                return new NBTTagByteArray(array);
+            }
+        }
+
+        @Override
+        Object read(NBTBase tag, Object existing) {
+            Collection<Object> collection = this.createCollection(existing);
+            if (collection == null) {
+                return existing;
+            }
+            if (tag instanceof NBTTagIntArray) {
+                for (int element : ((NBTTagIntArray) tag).func_150302_c()) {
+                    collection.add(element);
+                }
+            } else if (tag instanceof NBTTagByteArray) {
+                for (byte element : ((NBTTagByteArray) tag).func_150292_c()) {
+                    collection.add(element);
+                }
+            } else {
+                boolean keepNulls = collection instanceof List;
+                NBTValueCodec.readElements(tag, (elementTag, index) -> {
+                    Object element = elementTag != null ? this.elementCodec.read(elementTag, null) : null;
+                    if (element != null || keepNulls) {
+                        collection.add(element);
+                    }
+                });
+            }
+            return collection;
+        }
+
+        private Collection<Object> createCollection(Object existing) {
+            if (existing != null) {
+                Collection<Object> collection = (Collection<Object>) existing;
+                try {
+                    collection.clear();
+                    return collection;
+                } catch (UnsupportedOperationException ignored) {
+
+                }
+            }
+            if (this.constructor != null) {
+                return (Collection<Object>) NBTValueCodec.newInstance(this.constructor);
+            } else if (EnumSet.class.isAssignableFrom(this.type) && this.elementType.isEnum()) {
+                return EnumSet.noneOf((Class) this.elementType);
+            } else if (this.type.isAssignableFrom(ArrayList.class)) {
+                return new ArrayList<>();
+            } else if (this.type.isAssignableFrom(TreeSet.class) && SortedSet.class.isAssignableFrom(this.type)) {
+                return new TreeSet<>();
+            } else if (this.type.isAssignableFrom(HashSet.class)) {
+                return new HashSet<>();
+            } else if (this.type.isAssignableFrom(ArrayDeque.class) && Queue.class.isAssignableFrom(this.type)) {
+                return new ArrayDeque<>();
+            }
+            return null;
+        }
+
+        @Override
+        boolean usesExisting() {
+            return true;
+        }
+    }
+
+    private static class MapCodec extends NBTValueCodec {
+        private static final String KEY = "k";
+        private static final String VALUE = "v";
+
+        private final Class<?> type;
+        private final Class<?> keyType;
+        private final NBTValueCodec keyCodec;
+        private final NBTValueCodec valueCodec;
+        private final Constructor<?> constructor;
+
+        MapCodec(Class<?> type, Class<?> keyType, NBTValueCodec keyCodec, NBTValueCodec valueCodec) {
+            this.type = type;
+            this.keyType = keyType;
+            this.keyCodec = keyCodec;
+            this.valueCodec = valueCodec;
+            this.constructor = NBTValueCodec.getConstructor(type);
+        }
+
+        @Override
+        NBTBase write(Object value) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            if (this.keyType == String.class) {
+                NBTTagCompound compound = new NBTTagCompound();
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    if (entry.getKey() != null && entry.getValue() != null) {
+                        NBTBase valueTag = this.valueCodec.write(entry.getValue());
+                        if (valueTag != null) {
+                            compound.setTag((String) entry.getKey(), valueTag);
+                        }
+                    }
+                }
+                return compound;
+            }
+            NBTTagList list = new NBTTagList();
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                if (entry.getKey() != null && entry.getValue() != null) {
+                    NBTBase keyTag = this.keyCodec.write(entry.getKey());
+                    NBTBase valueTag = this.valueCodec.write(entry.getValue());
+                    if (keyTag != null && valueTag != null) {
+                        NBTTagCompound entryCompound = new NBTTagCompound();
+                        entryCompound.setTag(KEY, keyTag);
+                        entryCompound.setTag(VALUE, valueTag);
+                        list.appendTag(entryCompound);
+                    }
+                }
+            }
+            return list;
+        }
+
+        @Override
+        Object read(NBTBase tag, Object existing) {
+            Map<Object, Object> map = this.createMap(existing);
+            if (map == null) {
+                return existing;
+            }
+            if (tag instanceof NBTTagCompound) {
+                NBTTagCompound compound = (NBTTagCompound) tag;
+                for (Object key : compound.func_150296_c()) {
+                    Object value = this.valueCodec.read(compound.getTag((String) key), null);
+                    if (value != null) {
+                        map.put(key, value);
+                    }
+                }
+            } else if (tag instanceof NBTTagList) {
+                NBTTagList list = (NBTTagList) tag;
+                for (int i = 0; i < list.tagCount(); i++) {
+                    NBTTagCompound entryCompound = list.getCompoundTagAt(i);
+                    NBTBase keyTag = entryCompound.getTag(KEY);
+                    NBTBase valueTag = entryCompound.getTag(VALUE);
+                    if (keyTag != null && valueTag != null) {
+                        Object key = this.keyCodec.read(keyTag, null);
+                        Object value = this.valueCodec.read(valueTag, null);
+                        if (key != null && value != null) {
+                            map.put(key, value);
+                        }
+                    }
+                }
+            }
+            return map;
+        }
+
+        private Map<Object, Object> createMap(Object existing) {
+            if (existing != null) {
+                Map<Object, Object> map = (Map<Object, Object>) existing;
+                try {
+                    map.clear();
+                    return map;
+                } catch (UnsupportedOperationException ignored) {
+
+                }
+            }
+            if (this.constructor != null) {
+                return (Map<Object, Object>) NBTValueCodec.newInstance(this.constructor);
+            } else if (EnumMap.class.isAssignableFrom(this.type) && this.keyType.isEnum()) {
+                return new EnumMap(this.keyType);
+            } else if (this.type.isAssignableFrom(LinkedHashMap.class)) {
+                return new LinkedHashMap<>();
+            } else if (this.type.isAssignableFrom(TreeMap.class) && SortedMap.class.isAssignableFrom(this.type)) {
+                return new TreeMap<>();
+            }
+            return null;
+        }
+
+        @Override
+        boolean usesExisting() {
+            return true;
+        }
+    }
+
+    private static class ArrayCodec extends NBTValueCodec {
+        private final Class<?> componentType;
+        private final NBTValueCodec componentCodec;
+
+        ArrayCodec(Class<?> componentType, NBTValueCodec componentCodec) {
+            this.componentType = componentType;
+            this.componentCodec = componentCodec;
+        }
+
+        @Override
+        NBTBase write(Object value) {
+            int length = Array.getLength(value);
+            ElementWriter writer = new ElementWriter();
+            for (int i = 0; i < length; i++) {
+                Object element = Array.get(value, i);
+                writer.add(element != null ? this.componentCodec.write(element) : null);
+            }
+            return writer.finish();
+        }
+
+        @Override
+        Object read(NBTBase tag, Object existing) {
+            int length = NBTValueCodec.getElementCount(tag);
+            if (length < 0) {
+                return existing;
+            }
+            Object array = Array.newInstance(this.componentType, length);
+            NBTValueCodec.readElements(tag, (elementTag, index) -> {
+                if (elementTag != null) {
+                    Object element = this.componentCodec.read(elementTag, null);
+                    if (element != null && this.componentType.isInstance(element)) {
+                        Array.set(array, index, element);
+                    }
+                }
+            });
+            return array;
+        }
+    }
+
+    /**
+     * Appends element tags straight to a list. Lists can't hold gaps, so once a null element turns up the elements are
+     * moved to a compound holding the length and the indexed non-null elements instead.
+     */
+    private static class ElementWriter {
+        private NBTTagList list = new NBTTagList();
+        private NBTTagList indexed;
+        private int length;
+
+        void add(NBTBase tag) {
+            if (this.indexed != null) {
+                if (tag != null) {
+                    this.indexed.appendTag(ElementWriter.createElement(this.length, tag));
+                }
+            } else if (tag != null) {
+                this.list.appendTag(tag);
+            } else {
+                this.indexed = new NBTTagList();
+                List<?> tagList = this.list.tagList;
+                for (int i = 0; i < tagList.size(); i++) {
+                    this.indexed.appendTag(ElementWriter.createElement(i, (NBTBase) tagList.get(i)));
+                }
+                this.list = null;
+            }
+            this.length++;
+        }
+
+        NBTBase finish() {
+            if (this.indexed == null) {
+                return this.list;
+            }
+            NBTTagCompound compound = new NBTTagCompound();
+            compound.setInteger(LENGTH, this.length);
+            compound.setTag(ELEMENTS, this.indexed);
+            return compound;
+        }
+
+        private static NBTTagCompound createElement(int index, NBTBase tag) {
+            NBTTagCompound element = new NBTTagCompound();
+            element.setInteger(INDEX, index);
+            element.setTag(VALUE, tag);
+            return element;
+        }
+    }
+}
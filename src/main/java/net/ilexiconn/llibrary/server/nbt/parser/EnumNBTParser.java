@@ -0,0 +1,56 @@
+package net.ilexiconn.llibrary.server.nbt.parser;
+
+import net.minecraft.nbt.NBTBase;
+import net.minecraft.nbt.NBTTagInt;
+import net.minecraft.nbt.NBTTagString;
+
+/**
+ * Parser for enum constants. Constants are written either by name or by ordinal, and both forms are accepted when
+ * reading. Enums without a registered parser are stored by name. To store an enum by ordinal, register a parser with
+ * {@code new EnumNBTParser<>(type, true)}.
+ *
+ * @param <E> the enum type
+ * @since 1.6.0
+ */
+public class EnumNBTParser<E extends Enum<E>> implements INBTParser<E, NBTBase> {
+    private final Class<E> type;
+    private final E[] constants;
+    private final boolean ordinal;
+
+    public EnumNBTParser(Class<E> type, boolean ordinal) {
+        this.type = type;
+        this.constants = type.getEnumConstants();
+        this.ordinal = ordinal;
+    }
+
+    @Override
+    public E parseTag(NBTBase tag) {
+        if (tag instanceof NBTTagString) {
+            String name = ((NBTTagString) tag).func_150285_a_();
+            try {
+                return Enum.valueOf(this.type, name);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        } else if (tag instanceof NBTBase.NBTPrimitive) {
+            int index = ((NBTBase.NBTPrimitive) tag).func_150287_d();
+            return index >= 0 && index < this.constants.length ? this.constants[index] : null;
+        }
+        return null;
+    }
+
+    @Override
+    public NBTBase parseValue(E value) {
+        if (this.ordinal) {
+            return new NBTTagInt(value.ordinal());
+        }
+        return new NBTTagString(value.name());
+    }
+
+    /**
+     * @return true if constants are written by ordinal, false if by name
+     */
+    public boolean isOrdinal() {
+        return this.ordinal;
+    }
+}
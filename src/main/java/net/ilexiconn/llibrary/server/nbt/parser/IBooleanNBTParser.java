@@ -0,0 +1,24 @@
+package net.ilexiconn.llibrary.server.nbt.parser;
+
+import net.minecraft.nbt.NBTBase;
+
+/**
+ * Parser for {@code boolean} values that avoids boxing.
+ *
+ * @since 1.6.0
+ */
+public interface IBooleanNBTParser<T extends NBTBase> extends INBTParser<Boolean, T> {
+    boolean parseBooleanTag(T tag);
+
+    T parseBooleanValue(boolean value);
+
+    @Override
+    default Boolean parseTag(T tag) {
+        return this.parseBooleanTag(tag);
+    }
+
+    @Override
+    default T parseValue(Boolean value) {
+        return this.parseBooleanValue(value);
+    }
+}
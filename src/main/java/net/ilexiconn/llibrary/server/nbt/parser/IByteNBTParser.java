@@ -0,0 +1,24 @@
+package net.ilexiconn.llibrary.server.nbt.parser;
+
+import net.minecraft.nbt.NBTBase;
+
+/**
+ * Parser for {@code byte} values that avoids boxing.
+ *
+ * @since 1.6.0
+ */
+public interface IByteNBTParser<T extends NBTBase> extends INBTParser<Byte, T> {
+    byte parseByteTag(T tag);
+
+    T parseByteValue(byte value);
+
+    @Override
+    default Byte parseTag(T tag) {
+        return this.parseByteTag(tag);
+    }
+
+    @Override
+    default T parseValue(Byte value) {
+        return this.parseByteValue(value);
+    }
+}
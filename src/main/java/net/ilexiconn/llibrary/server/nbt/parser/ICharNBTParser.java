@@ -0,0 +1,24 @@
+package net.ilexiconn.llibrary.server.nbt.parser;
+
+import net.minecraft.nbt.NBTBase;
+
+/**
+ * Parser for {@code char} values that avoids boxing.
+ *
+ * @since 1.6.0
+ */
+public interface ICharNBTParser<T extends NBTBase> extends INBTParser<Character, T> {
+    char parseCharTag(T tag);
+
+    T parseCharValue(char value);
+
+    @Override
+    default Character parseTag(T tag) {
+        return this.parseCharTag(tag);
+    }
+
+    @Override
+    default T parseValue(Character value) {
+        return this.parseCharValue(value);
+    }
+}
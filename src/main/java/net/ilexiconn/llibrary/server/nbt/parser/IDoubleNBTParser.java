@@ -0,0 +1,24 @@
+package net.ilexiconn.llibrary.server.nbt.parser;
+
+import net.minecraft.nbt.NBTBase;
+
+/**
+ * Parser for {@code double} values that avoids boxing.
+ *
+ * @since 1.6.0
+ */
+public interface IDoubleNBTParser<T extends NBTBase> extends INBTParser<Double, T> {
+    double parseDoubleTag(T tag);
+
+    T parseDoubleValue(double value);
+
+    @Override
+    default Double parseTag(T tag) {
+        return this.parseDoubleTag(tag);
+    }
+
+    @Override
+    default T parseValue(Double value) {
+        return this.parseDoubleValue(value);
+    }
+}
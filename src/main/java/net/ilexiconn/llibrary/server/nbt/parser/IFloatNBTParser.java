@@ -0,0 +1,24 @@
+package net.ilexiconn.llibrary.server.nbt.parser;
+
+import net.minecraft.nbt.NBTBase;
+
+/**
+ * Parser for {@code float} values that avoids boxing.
+ *
+ * @since 1.6.0
+ */
+public interface IFloatNBTParser<T extends NBTBase> extends INBTParser<Float, T> {
+    float parseFloatTag(T tag);
+
+    T parseFloatValue(float value);
+
+    @Override
+    default Float parseTag(T tag) {
+        return this.parseFloatTag(tag);
+    }
+
+    @Override
+    default T parseValue(Float value) {
+        return this.parseFloatValue(value);
+    }
+}
@@ -0,0 +1,24 @@
+package net.ilexiconn.llibrary.server.nbt.parser;
+
+import net.minecraft.nbt.NBTBase;
+
+/**
+ * Parser for {@code int} values that avoids boxing.
+ *
+ * @since 1.6.0
+ */
+public interface IIntNBTParser<T extends NBTBase> extends INBTParser<Integer, T> {
+    int parseIntTag(T tag);
+
+    T parseIntValue(int value);
+
+    @Override
+    default Integer parseTag(T tag) {
+        return this.parseIntTag(tag);
+    }
+
+    @Override
+    default T parseValue(Integer value) {
+        return this.parseIntValue(value);
+    }
+}
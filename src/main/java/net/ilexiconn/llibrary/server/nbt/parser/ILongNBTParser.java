@@ -0,0 +1,24 @@
+package net.ilexiconn.llibrary.server.nbt.parser;
+
+import net.minecraft.nbt.NBTBase;
+
+/**
+ * Parser for {@code long} values that avoids boxing.
+ *
+ * @since 1.6.0
+ */
+public interface ILongNBTParser<T extends NBTBase> extends INBTParser<Long, T> {
+    long parseLongTag(T tag);
+
+    T parseLongValue(long value);
+
+    @Override
+    default Long parseTag(T tag) {
+        return this.parseLongTag(tag);
+    }
+
+    @Override
+    default T parseValue(Long value) {
+        return this.parseLongValue(value);
+    }
+}
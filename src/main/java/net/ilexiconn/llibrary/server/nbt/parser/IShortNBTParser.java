@@ -0,0 +1,24 @@
+package net.ilexiconn.llibrary.server.nbt.parser;
+
+import net.minecraft.nbt.NBTBase;
+
+/**
+ * Parser for {@code short} values that avoids boxing.
+ *
+ * @since 1.6.0
+ */
+public interface IShortNBTParser<T extends NBTBase> extends INBTParser<Short, T> {
+    short parseShortTag(T tag);
+
+    T parseShortValue(short value);
+
+    @Override
+    default Short parseTag(T tag) {
+        return this.parseShortTag(tag);
+    }
+
+    @Override
+    default T parseValue(Short value) {
+        return this.parseShortValue(value);
+    }
+}
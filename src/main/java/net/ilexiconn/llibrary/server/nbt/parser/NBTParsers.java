@@ -3,6 +3,8 @@ package net.ilexiconn.llibrary.server.nbt.parser;
 import net.minecraft.item.ItemStack;
 import net.minecraft.nbt.*;
 
+import java.util.Optional;
+
 /**
  * @author iLexiconn
  * @since 1.1.0
@@ -119,11 +121,11 @@ public enum NBTParsers implements INBTParser {
     BOOLEAN_ARRAY {
         @Override
         public Object parseTag(NBTBase tag) {
-            NBTTagCompound list = (NBTTagCompound) tag;
-            Boolean[] boolArray = new Boolean[list.getInteger("length")];
-            byte[] boolList = list.getByteArray("array");
+            byte[] boolList = NBTParsers.getPackedBooleans(tag);
+            int offset = NBTParsers.getPackedBooleanOffset(tag);
+            Boolean[] boolArray = new Boolean[NBTParsers.getPackedBooleanLength(tag)];
             for (int i = 0; i < boolArray.length; i++) {
-                boolArray[i] = ((boolList[i / 8] >>> (i % 8)) & 1) != 0;
+                boolArray[i] = ((boolList[offset + i / 8] >>> (i % 8)) & 1) != 0;
             }
             return boolArray;
         }
@@ -131,25 +133,24 @@ public enum NBTParsers implements INBTParser {
         @Override
         public NBTBase parseValue(Object value) {
             Boolean[] valueBoolArray = (Boolean[]) value;
-            byte[] valueByteArray = new byte[(valueBoolArray.length + 7) / 8];
+            boolean compact = NBTParsers.compactArrays;
+            int offset = compact ? PACKED_HEADER_SIZE : 0;
+            byte[] valueByteArray = new byte[offset + (valueBoolArray.length + 7) / 8];
             for (int i = 0; i < valueBoolArray.length; i++) {
-                valueByteArray[i / 8] |= (byte) ((valueBoolArray[i] ? 1 : 0) << (i % 8));
+                valueByteArray[offset + i / 8] |= (byte) ((valueBoolArray[i] ? 1 : 0) << (i % 8));
             }
-            NBTTagCompound byteArrayCompound = new NBTTagCompound();
-            byteArrayCompound.setInteger("length", valueBoolArray.length);
-            byteArrayCompound.setByteArray("array", valueByteArray);
-            return byteArrayCompound;
+            return NBTParsers.createPackedBooleanTag(valueByteArray, valueBoolArray.length, compact);
         }
     },
 
     BOOLEAN_ARRAY_PRIM {
         @Override
         public Object parseTag(NBTBase tag) {
-            NBTTagCompound list = (NBTTagCompound) tag;
-            boolean[] boolArray = new boolean[list.getInteger("length")];
-            byte[] boolList = list.getByteArray("array");
+            byte[] boolList = NBTParsers.getPackedBooleans(tag);
+            int offset = NBTParsers.getPackedBooleanOffset(tag);
+            boolean[] boolArray = new boolean[NBTParsers.getPackedBooleanLength(tag)];
             for (int i = 0; i < boolArray.length; i++) {
-                boolArray[i] = ((boolList[i / 8] >>> (i % 8)) & 1) != 0;
+                boolArray[i] = ((boolList[offset + i / 8] >>> (i % 8)) & 1) != 0;
             }
             return boolArray;
         }
@@ -157,14 +158,13 @@ public enum NBTParsers implements INBTParser {
         @Override
         public NBTBase parseValue(Object value) {
             boolean[] valueBoolArray = (boolean[]) value;
-            byte[] valueByteArray = new byte[(valueBoolArray.length + 7) / 8];
+            boolean compact = NBTParsers.compactArrays;
+            int offset = compact ? PACKED_HEADER_SIZE : 0;
+            byte[] valueByteArray = new byte[offset + (valueBoolArray.length + 7) / 8];
             for (int i = 0; i < valueBoolArray.length; i++) {
-                valueByteArray[i / 8] |= (byte) ((valueBoolArray[i] ? 1 : 0) << (i % 8));
+                valueByteArray[offset + i / 8] |= (byte) ((valueBoolArray[i] ? 1 : 0) << (i % 8));
             }
-            NBTTagCompound byteArrayCompound = new NBTTagCompound();
-            byteArrayCompound.setInteger("length", valueBoolArray.length);
-            byteArrayCompound.setByteArray("array", valueByteArray);
-            return byteArrayCompound;
+            return NBTParsers.createPackedBooleanTag(valueByteArray, valueBoolArray.length, compact);
         }
     },
 
@@ -493,7 +493,92 @@ public enum NBTParsers implements INBTParser {
         }
     };
 
+    private static final int PACKED_HEADER_SIZE = 4;
+
+    private static volatile boolean compactArrays;
+
+    private static final ClassValue<Optional<NBTParsers>> BUILTIN_PARSERS = new ClassValue<Optional<NBTParsers>>() {
+        @Override
+        protected Optional<NBTParsers> computeValue(Class<?> type) {
+            return Optional.ofNullable(NBTParsers.resolveBuiltinParser(type));
+        }
+    };
+
+    /**
+     * Enable or disable the compact array encoding. In compact mode, boolean arrays are written as a single byte
+     * array with a length header instead of a compound holding the length and the packed bits. Both encodings are
+     * always readable, so existing data is migrated the next time it is saved.
+     *
+     * @param compactArrays true to write the compact encoding
+     */
+    public static void setCompactArrays(boolean compactArrays) {
+        NBTParsers.compactArrays = compactArrays;
+    }
+
+    /**
+     * @return true if arrays are written in the compact encoding
+     */
+    public static boolean isCompactArrays() {
+        return NBTParsers.compactArrays;
+    }
+
+    private static NBTBase createPackedBooleanTag(byte[] packed, int length, boolean compact) {
+        if (compact) {
+            packed[0] = (byte) (length >>> 24);
+            packed[1] = (byte) (length >>> 16);
+            packed[2] = (byte) (length >>> 8);
+            packed[3] = (byte) length;
+            return new NBTTagByteArray(packed);
+        }
+        NBTTagCompound byteArrayCompound = new NBTTagCompound();
+        byteArrayCompound.setInteger("length", length);
+        byteArrayCompound.setByteArray("array", packed);
+        return byteArrayCompound;
+    }
+
+    private static byte[] getPackedBooleans(NBTBase tag) {
+        if (tag instanceof NBTTagCompound) {
+            return ((NBTTagCompound) tag).getByteArray("array");
+        }
+        return ((NBTTagByteArray) tag).func_150292_c();
+    }
+
+    private static int getPackedBooleanOffset(NBTBase tag) {
+        return tag instanceof NBTTagCompound ? 0 : PACKED_HEADER_SIZE;
+    }
+
+    /**
+     * @return the amount of packed booleans, clamped to the amount the packed bytes can actually hold, so corrupted
+     * lengths can't cause huge allocations or reads past the end of the array
+     */
+    private static int getPackedBooleanLength(NBTBase tag) {
+        byte[] packed = NBTParsers.getPackedBooleans(tag);
+        int offset = NBTParsers.getPackedBooleanOffset(tag);
+        if (packed.length < offset) {
+            return 0;
+        }
+        int length;
+        if (tag instanceof NBTTagCompound) {
+            length = ((NBTTagCompound) tag).getInteger("length");
+        } else {
+            length = (packed[0] & 0xFF) << 24 | (packed[1] & 0xFF) << 16 | (packed[2] & 0xFF) << 8 | (packed[3] & 0xFF);
+        }
+        return (int) Math.max(0, Math.min(length, (long) (packed.length - offset) * 8));
+    }
+
+    /**
+     * Get the builtin parser for a type. The result is computed once per class and cached.
+     *
+     * @param type the value type
+     * @param <V>  the value type
+     * @param <T>  the tag type
+     * @return the builtin parser, null if there is none for the given type
+     */
     public static <V, T extends NBTBase> INBTParser<V, T> getBuiltinParser(Class<V> type) {
+        return BUILTIN_PARSERS.get(type).orElse(null);
+    }
+
+    private static NBTParsers resolveBuiltinParser(Class<?> type) {
         if (Boolean.class.isAssignableFrom(type) || boolean.class.isAssignableFrom(type)) {
             return BOOLEAN;
         } else if (Byte.class.isAssignableFrom(type) || byte.class.isAssignableFrom(type)) {
@@ -0,0 +1,136 @@
+package net.ilexiconn.llibrary.server.nbt.parser;
+
+import net.minecraft.nbt.*;
+
+/**
+ * Primitive specialized versions of the builtin {@link NBTParsers}. They produce the same tags, but read and write
+ * unboxed values.
+ *
+ * @since 1.6.0
+ */
+public final class PrimitiveNBTParsers {
+    public static final IBooleanNBTParser<NBTTagByte> BOOLEAN = new IBooleanNBTParser<NBTTagByte>() {
+        @Override
+        public boolean parseBooleanTag(NBTTagByte tag) {
+            return tag.func_150290_f() != 0;
+        }
+
+        @Override
+        public NBTTagByte parseBooleanValue(boolean value) {
+            return new NBTTagByte((byte) (value ? 1 : 0));
+        }
+    };
+
+    public static final IByteNBTParser<NBTTagByte> BYTE = new IByteNBTParser<NBTTagByte>() {
+        @Override
+        public byte parseByteTag(NBTTagByte tag) {
+            return tag.func_150290_f();
+        }
+
+        @Override
+        public NBTTagByte parseByteValue(byte value) {
+            return new NBTTagByte(value);
+        }
+    };
+
+    public static final ICharNBTParser<NBTTagShort> CHAR = new ICharNBTParser<NBTTagShort>() {
+        @Override
+        public char parseCharTag(NBTTagShort tag) {
+            return (char) tag.func_150289_e();
+        }
+
+        @Override
+        public NBTTagShort parseCharValue(char value) {
+            return new NBTTagShort((short) value);
+        }
+    };
+
+    public static final IShortNBTParser<NBTTagShort> SHORT = new IShortNBTParser<NBTTagShort>() {
+        @Override
+        public short parseShortTag(NBTTagShort tag) {
+            return tag.func_150289_e();
+        }
+
+        @Override
+        public NBTTagShort parseShortValue(short value) {
+            return new NBTTagShort(value);
+        }
+    };
+
+    public static final IIntNBTParser<NBTTagInt> INTEGER = new IIntNBTParser<NBTTagInt>() {
+        @Override
+        public int parseIntTag(NBTTagInt tag) {
+            return tag.func_150287_d();
+        }
+
+        @Override
+        public NBTTagInt parseIntValue(int value) {
+            return new NBTTagInt(value);
+        }
+    };
+
+    public static final IFloatNBTParser<NBTTagFloat> FLOAT = new IFloatNBTParser<NBTTagFloat>() {
+        @Override
+        public float parseFloatTag(NBTTagFloat tag) {
+            return tag.func_150288_h();
+        }
+
+        @Override
+        public NBTTagFloat parseFloatValue(float value) {
+            return new NBTTagFloat(value);
+        }
+    };
+
+    public static final ILongNBTParser<NBTTagLong> LONG = new ILongNBTParser<NBTTagLong>() {
+        @Override
+        public long parseLongTag(NBTTagLong tag) {
+            return tag.func_150291_c();
+        }
+
+        @Override
+        public NBTTagLong parseLongValue(long value) {
+            return new NBTTagLong(value);
+        }
+    };
+
+    public static final IDoubleNBTParser<NBTTagDouble> DOUBLE = new IDoubleNBTParser<NBTTagDouble>() {
+        @Override
+        public double parseDoubleTag(NBTTagDouble tag) {
+            return tag.func_150286_g();
+        }
+
+        @Override
+        public NBTTagDouble parseDoubleValue(double value) {
+            return new NBTTagDouble(value);
+        }
+    };
+
+    private PrimitiveNBTParsers() {
+    }
+
+    /**
+     * @param type the primitive type
+     * @return the specialized parser for the given primitive type, null if the type isn't primitive
+     */
+    public static INBTParser<?, ?> getPrimitiveParser(Class<?> type) {
+        if (type == boolean.class) {
+            return BOOLEAN;
+        } else if (type == byte.class) {
+            return BYTE;
+        } else if (type == char.class) {
+            return CHAR;
+        } else if (type == short.class) {
+            return SHORT;
+        } else if (type == int.class) {
+            return INTEGER;
+        } else if (type == float.class) {
+            return FLOAT;
+        } else if (type == long.class) {
+            return LONG;
+        } else if (type == double.class) {
+            return DOUBLE;
+        } else {
+            return null;
+        }
+    }
+}
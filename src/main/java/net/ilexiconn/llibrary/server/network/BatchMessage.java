@@ -0,0 +1,81 @@
+package net.ilexiconn.llibrary.server.network;
+
+import cpw.mods.fml.common.network.ByteBufUtils;
+import cpw.mods.fml.common.network.simpleimpl.MessageContext;
+import cpw.mods.fml.relauncher.Side;
+import cpw.mods.fml.relauncher.SideOnly;
+import io.netty.buffer.ByteBuf;
+import net.ilexiconn.llibrary.LLibrary;
+import net.minecraft.client.Minecraft;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.server.MinecraftServer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bundles multiple LLibrary messages into a single packet. Messages are handled in the order they were added.
+ *
+ * @see MessageBatchHandler
+ * @since 1.6.0
+ */
+public class BatchMessage extends AbstractMessage<BatchMessage> {
+    private List<AbstractMessage<?>> messages;
+
+    public BatchMessage() {
+
+    }
+
+    public BatchMessage(List<AbstractMessage<?>> messages) {
+        this.messages = messages;
+    }
+
+    @Override
+    @SideOnly(Side.CLIENT)
+    public void onClientReceived(Minecraft client, BatchMessage message, EntityPlayer player, MessageContext messageContext) {
+        for (AbstractMessage inner : message.messages) {
+            LLibrary.PROXY.handleMessage(inner, messageContext);
+        }
+    }
+
+    @Override
+    public void onServerReceived(MinecraftServer server, BatchMessage message, EntityPlayer player, MessageContext messageContext) {
+
+    }
+
+    @Override
+    public void fromBytes(ByteBuf buf) {
+        int count = ByteBufUtils.readVarInt(buf, 5);
+        this.messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int index = ByteBufUtils.readVarInt(buf, 5);
+            int length = buf.readInt();
+            ByteBuf messageBuf = buf.readSlice(length);
+            Class<? extends AbstractMessage> messageType = NetworkHandler.INSTANCE.getMessageType(LLibrary.NETWORK_WRAPPER, index);
+            if (messageType == null) {
+                LLibrary.LOGGER.error("Skipping batched message with unknown index " + index);
+                continue;
+            }
+            try {
+                AbstractMessage<?> message = messageType.getDeclaredConstructor().newInstance();
+                message.fromBytes(messageBuf);
+                this.messages.add(message);
+            } catch (ReflectiveOperationException e) {
+                LLibrary.LOGGER.error("Failed to create batched message " + messageType.getName(), e);
+            }
+        }
+    }
+
+    @Override
+    public void toBytes(ByteBuf buf) {
+        ByteBufUtils.writeVarInt(buf, this.messages.size(), 5);
+        for (AbstractMessage<?> message : this.messages) {
+            ByteBufUtils.writeVarInt(buf, NetworkHandler.INSTANCE.getMessageIndex(LLibrary.NETWORK_WRAPPER, message.getClass()), 5);
+            int lengthIndex = buf.writerIndex();
+            buf.writeInt(0);
+            message.toBytes(buf);
+            int length = buf.writerIndex() - lengthIndex - 4;
+            buf.setInt(lengthIndex, length);
+        }
+    }
+}
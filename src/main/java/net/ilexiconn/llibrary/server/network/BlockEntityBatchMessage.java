@@ -0,0 +1,247 @@
+package net.ilexiconn.llibrary.server.network;
+
+import cpw.mods.fml.common.network.ByteBufUtils;
+import cpw.mods.fml.common.network.simpleimpl.MessageContext;
+import cpw.mods.fml.relauncher.Side;
+import cpw.mods.fml.relauncher.SideOnly;
+import io.netty.buffer.ByteBuf;
+import net.ilexiconn.llibrary.server.entity.block.BlockEntity;
+import net.minecraft.client.Minecraft;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.nbt.NBTBase;
+import net.minecraft.nbt.NBTTagByte;
+import net.minecraft.nbt.NBTTagByteArray;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.nbt.NBTTagDouble;
+import net.minecraft.nbt.NBTTagFloat;
+import net.minecraft.nbt.NBTTagInt;
+import net.minecraft.nbt.NBTTagIntArray;
+import net.minecraft.nbt.NBTTagList;
+import net.minecraft.nbt.NBTTagLong;
+import net.minecraft.nbt.NBTTagShort;
+import net.minecraft.nbt.NBTTagString;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.tileentity.TileEntity;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tracking data of all changed {@link BlockEntity} instances in a single chunk. Positions are packed into a short
+ * relative to the chunk, and compound keys are written only once per message.
+ *
+ * @since 1.6.0
+ */
+public class BlockEntityBatchMessage extends AbstractMessage<BlockEntityBatchMessage> {
+    private int chunkX;
+    private int chunkZ;
+    private List<Short> positions = new ArrayList<>();
+    private List<NBTTagCompound> compounds = new ArrayList<>();
+
+    public BlockEntityBatchMessage() {
+
+    }
+
+    public BlockEntityBatchMessage(int chunkX, int chunkZ) {
+        this.chunkX = chunkX;
+        this.chunkZ = chunkZ;
+    }
+
+    /**
+     * Add the tracking data of a block entity in this message's chunk.
+     *
+     * @param entity   the block entity
+     * @param compound the tracking sensitive data
+     */
+    public void add(BlockEntity entity, NBTTagCompound compound) {
+        this.positions.add((short) ((entity.xCoord & 15) << 12 | (entity.zCoord & 15) << 8 | (entity.yCoord & 255)));
+        this.compounds.add(compound);
+    }
+
+    /**
+     * @return the chunk x position
+     */
+    public int getChunkX() {
+        return this.chunkX;
+    }
+
+    /**
+     * @return the chunk z position
+     */
+    public int getChunkZ() {
+        return this.chunkZ;
+    }
+
+    /**
+     * @return the amount of block entities in this message
+     */
+    public int size() {
+        return this.positions.size();
+    }
+
+    @Override
+    @SideOnly(Side.CLIENT)
+    public void onClientReceived(Minecraft client, BlockEntityBatchMessage message, EntityPlayer player, MessageContext messageContext) {
+        for (int i = 0; i < message.positions.size(); i++) {
+            int position = message.positions.get(i);
+            int x = message.chunkX << 4 | (position >> 12 & 15);
+            int z = message.chunkZ << 4 | (position >> 8 & 15);
+            int y = position & 255;
+            TileEntity tileEntity = player.worldObj.getTileEntity(x, y, z);
+            if (tileEntity instanceof BlockEntity) {
+                ((BlockEntity) tileEntity).loadTrackingSensitiveData(message.compounds.get(i));
+            }
+        }
+    }
+
+    @Override
+    public void onServerReceived(MinecraftServer server, BlockEntityBatchMessage message, EntityPlayer player, MessageContext messageContext) {
+
+    }
+
+    @Override
+    public void fromBytes(ByteBuf buf) {
+        this.chunkX = buf.readInt();
+        this.chunkZ = buf.readInt();
+        int count = ByteBufUtils.readVarInt(buf, 5);
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            this.positions.add(buf.readShort());
+            this.compounds.add((NBTTagCompound) BlockEntityBatchMessage.readTag(buf, 10, keys));
+        }
+    }
+
+    @Override
+    public void toBytes(ByteBuf buf) {
+        buf.writeInt(this.chunkX);
+        buf.writeInt(this.chunkZ);
+        ByteBufUtils.writeVarInt(buf, this.positions.size(), 5);
+        Map<String, Integer> keys = new HashMap<>();
+        for (int i = 0; i < this.positions.size(); i++) {
+            buf.writeShort(this.positions.get(i));
+            BlockEntityBatchMessage.writeTag(buf, this.compounds.get(i), keys);
+        }
+    }
+
+    private static void writeTag(ByteBuf buf, NBTBase tag, Map<String, Integer> keys) {
+        switch (tag.getId()) {
+            case 1:
+                buf.writeByte(((NBTTagByte) tag).func_150290_f());
+                break;
+            case 2:
+                buf.writeShort(((NBTTagShort) tag).func_150289_e());
+                break;
+            case 3:
+                buf.writeInt(((NBTTagInt) tag).func_150287_d());
+                break;
+            case 4:
+                buf.writeLong(((NBTTagLong) tag).func_150291_c());
+                break;
+            case 5:
+                buf.writeFloat(((NBTTagFloat) tag).func_150288_h());
+                break;
+            case 6:
+                buf.writeDouble(((NBTTagDouble) tag).func_150286_g());
+                break;
+            case 7:
+                byte[] bytes = ((NBTTagByteArray) tag).func_150292_c();
+                ByteBufUtils.writeVarInt(buf, bytes.length, 5);
+                buf.writeBytes(bytes);
+                break;
+            case 8:
+                ByteBufUtils.writeUTF8String(buf, ((NBTTagString) tag).func_150285_a_());
+                break;
+            case 9:
+                List<NBTBase> elements = ((NBTTagList) tag).tagList;
+                buf.writeByte(elements.isEmpty() ? 0 : elements.get(0).getId());
+                ByteBufUtils.writeVarInt(buf, elements.size(), 5);
+                for (NBTBase element : elements) {
+                    BlockEntityBatchMessage.writeTag(buf, element, keys);
+                }
+                break;
+            case 10:
+                NBTTagCompound compound = (NBTTagCompound) tag;
+                for (String key : (Set<String>) compound.func_150296_c()) {
+                    NBTBase value = compound.getTag(key);
+                    buf.writeByte(value.getId());
+                    Integer index = keys.get(key);
+                    if (index == null) {
+                        keys.put(key, keys.size());
+                        ByteBufUtils.writeVarInt(buf, 1, 5);
+                        ByteBufUtils.writeUTF8String(buf, key);
+                    } else {
+                        ByteBufUtils.writeVarInt(buf, index << 1, 5);
+                    }
+                    BlockEntityBatchMessage.writeTag(buf, value, keys);
+                }
+                buf.writeByte(0);
+                break;
+            case 11:
+                int[] ints = ((NBTTagIntArray) tag).func_150302_c();
+                ByteBufUtils.writeVarInt(buf, ints.length, 5);
+                for (int value : ints) {
+                    buf.writeInt(value);
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported tag type " + tag.getId());
+        }
+    }
+
+    private static NBTBase readTag(ByteBuf buf, int type, List<String> keys) {
+        switch (type) {
+            case 1:
+                return new NBTTagByte(buf.readByte());
+            case 2:
+                return new NBTTagShort(buf.readShort());
+            case 3:
+                return new NBTTagInt(buf.readInt());
+            case 4:
+                return new NBTTagLong(buf.readLong());
+            case 5:
+                return new NBTTagFloat(buf.readFloat());
+            case 6:
+                return new NBTTagDouble(buf.readDouble());
+            case 7:
+                byte[] bytes = new byte[ByteBufUtils.readVarInt(buf, 5)];
+                buf.readBytes(bytes);
+                return new NBTTagByteArray(bytes);
+            case 8:
+                return new NBTTagString(ByteBufUtils.readUTF8String(buf));
+            case 9:
+                NBTTagList list = new NBTTagList();
+                int elementType = buf.readByte();
+                int size = ByteBufUtils.readVarInt(buf, 5);
+                for (int i = 0; i < size; i++) {
+                    list.appendTag(BlockEntityBatchMessage.readTag(buf, elementType, keys));
+                }
+                return list;
+            case 10:
+                NBTTagCompound compound = new NBTTagCompound();
+                int valueType;
+                while ((valueType = buf.readByte()) != 0) {
+                    int reference = ByteBufUtils.readVarInt(buf, 5);
+                    String key;
+                    if ((reference & 1) != 0) {
+                        key = ByteBufUtils.readUTF8String(buf);
+                        keys.add(key);
+                    } else {
+                        key = keys.get(reference >>> 1);
+                    }
+                    compound.setTag(key, BlockEntityBatchMessage.readTag(buf, valueType, keys));
+                }
+                return compound;
+            case 11:
+                int[] ints = new int[ByteBufUtils.readVarInt(buf, 5)];
+                for (int i = 0; i < ints.length; i++) {
+                    ints[i] = buf.readInt();
+                }
+                return new NBTTagIntArray(ints);
+            default:
+                throw new IllegalArgumentException("Unsupported tag type " + type);
+        }
+    }
+}
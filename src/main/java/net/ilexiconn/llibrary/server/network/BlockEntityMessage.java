@@ -10,6 +10,7 @@ import net.minecraft.client.Minecraft;
 import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.server.MinecraftServer;
+import net.minecraft.tileentity.TileEntity;
 
 public class BlockEntityMessage extends AbstractMessage<BlockEntityMessage> {
     private int x;
@@ -32,8 +33,10 @@ public class BlockEntityMessage extends AbstractMessage<BlockEntityMessage> {
     @Override
     @SideOnly(Side.CLIENT)
     public void onClientReceived(Minecraft client, BlockEntityMessage message, EntityPlayer player, MessageContext messageContext) {
-        BlockEntity blockEntity = (BlockEntity) player.worldObj.getTileEntity(message.x, message.y, message.z);
-        blockEntity.loadTrackingSensitiveData(message.compound);
+        TileEntity tileEntity = player.worldObj.getTileEntity(message.x, message.y, message.z);
+        if (tileEntity instanceof BlockEntity) {
+            ((BlockEntity) tileEntity).loadTrackingSensitiveData(message.compound);
+        }
     }
 
     @Override
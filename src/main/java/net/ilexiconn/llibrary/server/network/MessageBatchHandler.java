@@ -0,0 +1,160 @@
+package net.ilexiconn.llibrary.server.network;
+
+import net.ilexiconn.llibrary.LLibrary;
+import net.ilexiconn.llibrary.server.entity.block.BlockEntity;
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.management.PlayerManager;
+import net.minecraft.world.ChunkCoordIntPair;
+import net.minecraft.world.WorldServer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects outgoing LLibrary messages during a server tick and sends them per player as a single
+ * {@link BatchMessage} at the end of the tick. Only messages registered to {@link LLibrary#NETWORK_WRAPPER} can be
+ * batched.
+ *
+ * @since 1.6.0
+ */
+public enum MessageBatchHandler {
+    INSTANCE;
+
+    private static final int CHUNK_RADIUS = 12;
+
+    private Map<EntityPlayerMP, List<AbstractMessage<?>>> pendingMessages = new IdentityHashMap<>();
+    private Map<WorldServer, Map<Long, ChunkBatch>> pendingChunkBatches = new IdentityHashMap<>();
+
+    /**
+     * Queue a message for a player.
+     *
+     * @param message the message
+     * @param player  the receiving player
+     */
+    public void sendTo(AbstractMessage<?> message, EntityPlayerMP player) {
+        List<AbstractMessage<?>> messages = this.pendingMessages.get(player);
+        if (messages == null) {
+            this.pendingMessages.put(player, messages = new ArrayList<>());
+        }
+        messages.add(message);
+    }
+
+    /**
+     * Queue a message for all players.
+     *
+     * @param message the message
+     */
+    public void sendToAll(AbstractMessage<?> message) {
+        MinecraftServer server = MinecraftServer.getServer();
+        if (server != null) {
+            for (Object player : server.getConfigurationManager().playerEntityList) {
+                this.sendTo(message, (EntityPlayerMP) player);
+            }
+        }
+    }
+
+    /**
+     * Queue a message for all players in the given world that have the chunk containing the given position loaded.
+     *
+     * @param message the message
+     * @param world   the world
+     * @param x       the block x position
+     * @param z       the block z position
+     * @param range   the maximum horizontal distance to the position in blocks, 0 or less for no limit
+     */
+    public void sendToChunkWatchers(AbstractMessage<?> message, WorldServer world, int x, int z, int range) {
+        PlayerManager playerManager = world.getPlayerManager();
+        int chunkX = x >> 4;
+        int chunkZ = z >> 4;
+        double rangeSq = (double) range * range;
+        for (Object entity : world.playerEntities) {
+            EntityPlayerMP player = (EntityPlayerMP) entity;
+            if (range > 0) {
+                double deltaX = player.posX - (x + 0.5);
+                double deltaZ = player.posZ - (z + 0.5);
+                if (deltaX * deltaX + deltaZ * deltaZ > rangeSq) {
+                    continue;
+                }
+            }
+            if (playerManager.isPlayerWatchingChunk(player, chunkX, chunkZ)) {
+                this.sendTo(message, player);
+            }
+        }
+    }
+
+    /**
+     * Queue the tracking data of a block entity. All block entities queued in the same chunk during a tick are sent
+     * as a single {@link BlockEntityBatchMessage} to the players watching that chunk.
+     *
+     * @param entity   the block entity
+     * @param compound the tracking sensitive data
+     */
+    public void sendBlockEntityUpdate(BlockEntity entity, NBTTagCompound compound) {
+        WorldServer world = (WorldServer) entity.getWorldObj();
+        Map<Long, ChunkBatch> chunkBatches = this.pendingChunkBatches.get(world);
+        if (chunkBatches == null) {
+            this.pendingChunkBatches.put(world, chunkBatches = new HashMap<>());
+        }
+        int chunkX = entity.xCoord >> 4;
+        int chunkZ = entity.zCoord >> 4;
+        long chunkKey = ChunkCoordIntPair.chunkXZ2Int(chunkX, chunkZ);
+        ChunkBatch chunkBatch = chunkBatches.get(chunkKey);
+        if (chunkBatch == null) {
+            chunkBatches.put(chunkKey, chunkBatch = new ChunkBatch(new BlockEntityBatchMessage(chunkX, chunkZ)));
+        }
+        int range = Math.max(entity.getTrackingRange(), 0);
+        if (chunkBatch.message.size() == 0) {
+            chunkBatch.range = range;
+        } else if (chunkBatch.range != 0) {
+            chunkBatch.range = range == 0 ? 0 : Math.max(chunkBatch.range, range);
+        }
+        chunkBatch.message.add(entity, compound);
+    }
+
+    /**
+     * Send all queued messages. Players with a single queued message receive it as is, all others receive one
+     * {@link BatchMessage}.
+     */
+    public void flush() {
+        if (!this.pendingChunkBatches.isEmpty()) {
+            for (Map.Entry<WorldServer, Map<Long, ChunkBatch>> entry : this.pendingChunkBatches.entrySet()) {
+                for (ChunkBatch chunkBatch : entry.getValue().values()) {
+                    BlockEntityBatchMessage message = chunkBatch.message;
+                    int range = chunkBatch.range > 0 ? chunkBatch.range + CHUNK_RADIUS : 0;
+                    this.sendToChunkWatchers(message, entry.getKey(), message.getChunkX() << 4 | 8, message.getChunkZ() << 4 | 8, range);
+                }
+            }
+            this.pendingChunkBatches.clear();
+        }
+        if (this.pendingMessages.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<EntityPlayerMP, List<AbstractMessage<?>>> entry : this.pendingMessages.entrySet()) {
+            EntityPlayerMP player = entry.getKey();
+            if (player.playerNetServerHandler == null) {
+                continue;
+            }
+            List<AbstractMessage<?>> messages = entry.getValue();
+            if (messages.size() == 1) {
+                LLibrary.NETWORK_WRAPPER.sendTo(messages.get(0), player);
+            } else {
+                LLibrary.NETWORK_WRAPPER.sendTo(new BatchMessage(messages), player);
+            }
+        }
+        this.pendingMessages.clear();
+    }
+
+    private static class ChunkBatch {
+        private final BlockEntityBatchMessage message;
+        private int range;
+
+        private ChunkBatch(BlockEntityBatchMessage message) {
+            this.message = message;
+        }
+    }
+}
@@ -12,7 +12,9 @@ import cpw.mods.fml.relauncher.Side;
 import net.ilexiconn.llibrary.LLibrary;
 
 import java.lang.reflect.Field;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -26,6 +28,7 @@ public enum NetworkHandler {
     INSTANCE;
 
     private Map<SimpleNetworkWrapper, Integer> idMap = new HashMap<>();
+    private Map<SimpleNetworkWrapper, List<Class<? extends AbstractMessage>>> messageTypeMap = new HashMap<>();
 
     /**
      * Register a message to both sides.
@@ -35,6 +38,11 @@ public enum NetworkHandler {
      * @param <T>            the message type
      */
     public <T extends AbstractMessage<T> & IMessageHandler<T, IMessage>> void registerMessage(SimpleNetworkWrapper networkWrapper, Class<T> clazz) {
+        List<Class<? extends AbstractMessage>> messageTypes = this.messageTypeMap.get(networkWrapper);
+        if (messageTypes == null) {
+            this.messageTypeMap.put(networkWrapper, messageTypes = new ArrayList<>());
+        }
+        messageTypes.add(clazz);
         try {
             AbstractMessage<T> message = clazz.getDeclaredConstructor().newInstance();
             if (message.registerOnSide(Side.CLIENT)) {
@@ -67,6 +75,30 @@ public enum NetworkHandler {
         this.idMap.put(networkWrapper, id + 1);
     }
 
+    /**
+     * Get the index of a message type, in the order messages were registered to the network wrapper. Indices are the
+     * same on both sides, regardless of which side a message is registered to.
+     *
+     * @param networkWrapper the network wrapper
+     * @param clazz          the message class
+     * @return the index, -1 if the message isn't registered to the network wrapper
+     */
+    public int getMessageIndex(SimpleNetworkWrapper networkWrapper, Class<? extends AbstractMessage> clazz) {
+        List<Class<? extends AbstractMessage>> messageTypes = this.messageTypeMap.get(networkWrapper);
+        return messageTypes == null ? -1 : messageTypes.indexOf(clazz);
+    }
+
+    /**
+     * @param networkWrapper the network wrapper
+     * @param index          the message index
+     * @return the message class at the given index, null if there is none
+     * @see NetworkHandler#getMessageIndex(SimpleNetworkWrapper, Class)
+     */
+    public Class<? extends AbstractMessage> getMessageType(SimpleNetworkWrapper networkWrapper, int index) {
+        List<Class<? extends AbstractMessage>> messageTypes = this.messageTypeMap.get(networkWrapper);
+        return messageTypes == null || index < 0 || index >= messageTypes.size() ? null : messageTypes.get(index);
+    }
+
     public void injectNetworkWrapper(ModContainer mod, ASMDataTable data) {
         SetMultimap<String, ASMDataTable.ASMData> annotations = data.getAnnotationsFor(mod);
         if (annotations != null) {
@@ -5,18 +5,41 @@ import cpw.mods.fml.common.network.simpleimpl.MessageContext;
 import cpw.mods.fml.relauncher.Side;
 import cpw.mods.fml.relauncher.SideOnly;
 import io.netty.buffer.ByteBuf;
+import net.ilexiconn.llibrary.LLibrary;
 import net.ilexiconn.llibrary.server.entity.EntityProperties;
+import net.ilexiconn.llibrary.server.entity.EntityPropertiesHandler;
+import net.ilexiconn.llibrary.server.entity.PropertiesTracker;
+import net.ilexiconn.llibrary.server.util.WeakIdentityHashMap;
 import net.minecraft.client.Minecraft;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.nbt.NBTBase;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.server.MinecraftServer;
 import net.minecraftforge.common.IExtendedEntityProperties;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 public class PropertiesMessage extends AbstractMessage<PropertiesMessage> {
+    private static final int PAYLOAD_FULL = 0;
+    private static final int PAYLOAD_DELTA = 1;
+
+    private static final List<String> CLIENT_NETWORK_IDS = new ArrayList<>();
+    private static final Map<EntityProperties<?>, NBTTagCompound> CLIENT_TRACKING_DATA = new WeakIdentityHashMap<>();
+
     private String propertyID;
-    private NBTTagCompound compound;
+    private int networkID = -1;
+    private boolean sendPropertyID = true;
     private int entityID;
+    private ByteBuf payload;
+
+    private boolean delta;
+    private NBTTagCompound compound;
+    private List<String> removedKeys;
 
     public PropertiesMessage() {
 
@@ -24,21 +47,92 @@ public class PropertiesMessage extends AbstractMessage<PropertiesMessage> {
 
     public PropertiesMessage(EntityProperties<?> properties, Entity entity) {
         this.propertyID = properties.getID();
-        NBTTagCompound compound = new NBTTagCompound();
-        properties.saveTrackingSensitiveData(compound);
-        this.compound = compound;
         this.entityID = entity.getEntityId();
+        this.payload = properties.getTrackingPayload(PropertiesTracker.NO_VERSION);
+    }
+
+    public PropertiesMessage(PropertiesTracker<?> tracker, EntityPlayerMP player) {
+        this.propertyID = tracker.getProperties().getID();
+        this.entityID = tracker.getEntity().getEntityId();
+        Map<String, Integer> networkIDs = EntityPropertiesHandler.INSTANCE.getNetworkIDs(player);
+        Integer networkID = networkIDs.get(this.propertyID);
+        if (networkID == null) {
+            networkIDs.put(this.propertyID, networkID = networkIDs.size());
+        } else {
+            this.sendPropertyID = false;
+        }
+        this.networkID = networkID;
+        this.payload = tracker.createSyncPayload();
+    }
+
+    /**
+     * Encode all tracking data as a payload.
+     *
+     * @param buf      the buffer to write to
+     * @param compound the tracking sensitive data
+     */
+    public static void encodeFull(ByteBuf buf, NBTTagCompound compound) {
+        buf.writeByte(PAYLOAD_FULL);
+        ByteBufUtils.writeTag(buf, compound);
+    }
+
+    /**
+     * Encode the difference between two versions of tracking data as a payload.
+     *
+     * @param buf      the buffer to write to
+     * @param base     the tracking sensitive data the receiver already has
+     * @param compound the current tracking sensitive data
+     */
+    public static void encodeDelta(ByteBuf buf, NBTTagCompound base, NBTTagCompound compound) {
+        NBTTagCompound changed = new NBTTagCompound();
+        for (String key : (Set<String>) compound.func_150296_c()) {
+            NBTBase tag = compound.getTag(key);
+            if (!tag.equals(base.getTag(key))) {
+                changed.setTag(key, tag);
+            }
+        }
+        List<String> removed = new ArrayList<>();
+        for (String key : (Set<String>) base.func_150296_c()) {
+            if (!compound.hasKey(key)) {
+                removed.add(key);
+            }
+        }
+        buf.writeByte(PAYLOAD_DELTA);
+        ByteBufUtils.writeTag(buf, changed);
+        ByteBufUtils.writeVarInt(buf, removed.size(), 5);
+        for (String key : removed) {
+            ByteBufUtils.writeUTF8String(buf, key);
+        }
     }
 
     @Override
     @SideOnly(Side.CLIENT)
     public void onClientReceived(Minecraft client, PropertiesMessage message, EntityPlayer player, MessageContext messageContext) {
+        if (message.propertyID == null) {
+            return;
+        }
         Entity entity = player.worldObj.getEntityByID(message.entityID);
         if (entity != null) {
             IExtendedEntityProperties extendedProperties = entity.getExtendedProperties(message.propertyID);
             if (extendedProperties instanceof EntityProperties) {
                 EntityProperties<?> properties = (EntityProperties) extendedProperties;
-                properties.loadTrackingSensitiveData(message.compound);
+                NBTTagCompound compound = message.compound;
+                if (message.delta) {
+                    NBTTagCompound previous = CLIENT_TRACKING_DATA.get(properties);
+                    if (previous == null) {
+                        LLibrary.NETWORK_WRAPPER.sendToServer(new PropertiesResyncMessage(message.entityID, message.propertyID));
+                        return;
+                    }
+                    for (String key : (Set<String>) message.compound.func_150296_c()) {
+                        previous.setTag(key, message.compound.getTag(key));
+                    }
+                    for (String key : message.removedKeys) {
+                        previous.removeTag(key);
+                    }
+                    compound = previous;
+                }
+                CLIENT_TRACKING_DATA.put(properties, compound);
+                properties.loadTrackingSensitiveData((NBTTagCompound) compound.copy());
                 properties.onSync();
             }
         }
@@ -51,15 +145,38 @@ public class PropertiesMessage extends AbstractMessage<PropertiesMessage> {
 
     @Override
     public void fromBytes(ByteBuf buf) {
-        this.propertyID = ByteBufUtils.readUTF8String(buf);
+        int header = ByteBufUtils.readVarInt(buf, 5);
+        this.networkID = (header >>> 1) - 1;
+        if ((header & 1) != 0) {
+            this.propertyID = ByteBufUtils.readUTF8String(buf);
+            if (this.networkID >= 0) {
+                while (CLIENT_NETWORK_IDS.size() <= this.networkID) {
+                    CLIENT_NETWORK_IDS.add(null);
+                }
+                CLIENT_NETWORK_IDS.set(this.networkID, this.propertyID);
+            }
+        } else if (this.networkID >= 0 && this.networkID < CLIENT_NETWORK_IDS.size()) {
+            this.propertyID = CLIENT_NETWORK_IDS.get(this.networkID);
+        }
+        this.entityID = ByteBufUtils.readVarInt(buf, 5);
+        this.delta = buf.readByte() == PAYLOAD_DELTA;
         this.compound = ByteBufUtils.readTag(buf);
-        this.entityID = buf.readInt();
+        if (this.delta) {
+            int removedCount = ByteBufUtils.readVarInt(buf, 5);
+            this.removedKeys = new ArrayList<>(removedCount);
+            for (int i = 0; i < removedCount; i++) {
+                this.removedKeys.add(ByteBufUtils.readUTF8String(buf));
+            }
+        }
     }
 
     @Override
     public void toBytes(ByteBuf buf) {
-        ByteBufUtils.writeUTF8String(buf, this.propertyID);
-        ByteBufUtils.writeTag(buf, this.compound);
-        buf.writeInt(this.entityID);
+        ByteBufUtils.writeVarInt(buf, (this.networkID + 1) << 1 | (this.sendPropertyID ? 1 : 0), 5);
+        if (this.sendPropertyID) {
+            ByteBufUtils.writeUTF8String(buf, this.propertyID);
+        }
+        ByteBufUtils.writeVarInt(buf, this.entityID, 5);
+        buf.writeBytes(this.payload, this.payload.readerIndex(), this.payload.readableBytes());
     }
 }
@@ -0,0 +1,57 @@
+package net.ilexiconn.llibrary.server.network;
+
+import cpw.mods.fml.common.network.ByteBufUtils;
+import cpw.mods.fml.common.network.simpleimpl.MessageContext;
+import cpw.mods.fml.relauncher.Side;
+import cpw.mods.fml.relauncher.SideOnly;
+import io.netty.buffer.ByteBuf;
+import net.ilexiconn.llibrary.server.entity.EntityPropertiesHandler;
+import net.minecraft.client.Minecraft;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.server.MinecraftServer;
+
+/**
+ * Sent by the client when it received a {@link PropertiesMessage} delta without having the data it's based on, asks
+ * the server to send all data of the properties on the next sync.
+ *
+ * @since 1.6.0
+ */
+public class PropertiesResyncMessage extends AbstractMessage<PropertiesResyncMessage> {
+    private int entityID;
+    private String propertyID;
+
+    public PropertiesResyncMessage() {
+
+    }
+
+    public PropertiesResyncMessage(int entityID, String propertyID) {
+        this.entityID = entityID;
+        this.propertyID = propertyID;
+    }
+
+    @Override
+    @SideOnly(Side.CLIENT)
+    public void onClientReceived(Minecraft client, PropertiesResyncMessage message, EntityPlayer player, MessageContext messageContext) {
+
+    }
+
+    @Override
+    public void onServerReceived(MinecraftServer server, PropertiesResyncMessage message, EntityPlayer player, MessageContext messageContext) {
+        if (player instanceof EntityPlayerMP) {
+            EntityPropertiesHandler.INSTANCE.requestResync((EntityPlayerMP) player, message.entityID, message.propertyID);
+        }
+    }
+
+    @Override
+    public void fromBytes(ByteBuf buf) {
+        this.entityID = ByteBufUtils.readVarInt(buf, 5);
+        this.propertyID = ByteBufUtils.readUTF8String(buf);
+    }
+
+    @Override
+    public void toBytes(ByteBuf buf) {
+        ByteBufUtils.writeVarInt(buf, this.entityID, 5);
+        ByteBufUtils.writeUTF8String(buf, this.propertyID);
+    }
+}
@@ -0,0 +1,263 @@
+package net.ilexiconn.llibrary.server.util;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Thread-safe {@link WeakIdentityHashMap}. Keys are spread over independently locked segments, so threads only
+ * contend when they access keys in the same segment. Iterators work on a snapshot and never throw
+ * {@link java.util.ConcurrentModificationException}. Null keys are not supported.
+ *
+ * @since 1.6.0
+ */
+public class ConcurrentWeakIdentityHashMap<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V> {
+    private static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+    private final WeakIdentityHashMap<K, V>[] segments;
+    private final int segmentMask;
+    private Set<Map.Entry<K, V>> entrySet;
+
+    @SuppressWarnings("unchecked")
+    public ConcurrentWeakIdentityHashMap(int concurrencyLevel) {
+        int segmentCount = 1;
+        while (segmentCount < concurrencyLevel) {
+            segmentCount <<= 1;
+        }
+        this.segments = (WeakIdentityHashMap<K, V>[]) new WeakIdentityHashMap[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            this.segments[i] = new WeakIdentityHashMap<>();
+        }
+        this.segmentMask = segmentCount - 1;
+    }
+
+    public ConcurrentWeakIdentityHashMap() {
+        this(DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (WeakIdentityHashMap<K, V> segment : this.segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (WeakIdentityHashMap<K, V> segment : this.segments) {
+            synchronized (segment) {
+                if (!segment.isEmpty()) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (key == null) {
+            return false;
+        }
+        WeakIdentityHashMap<K, V> segment = this.getSegment(key);
+        synchronized (segment) {
+            return segment.containsKey(key);
+        }
+    }
+
+    @Override
+    public V get(Object key) {
+        if (key == null) {
+            return null;
+        }
+        WeakIdentityHashMap<K, V> segment = this.getSegment(key);
+        synchronized (segment) {
+            return segment.get(key);
+        }
+    }
+
+    @Override
+    public V put(K key, V value) {
+        Objects.requireNonNull(key, "key");
+        WeakIdentityHashMap<K, V> segment = this.getSegment(key);
+        synchronized (segment) {
+            return segment.put(key, value);
+        }
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        Objects.requireNonNull(key, "key");
+        WeakIdentityHashMap<K, V> segment = this.getSegment(key);
+        synchronized (segment) {
+            V current = segment.get(key);
+            if (current == null && !segment.containsKey(key)) {
+                segment.put(key, value);
+            }
+            return current;
+        }
+    }
+
+    @Override
+    public V remove(Object key) {
+        if (key == null) {
+            return null;
+        }
+        WeakIdentityHashMap<K, V> segment = this.getSegment(key);
+        synchronized (segment) {
+            return segment.remove(key);
+        }
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        if (key == null) {
+            return false;
+        }
+        WeakIdentityHashMap<K, V> segment = this.getSegment(key);
+        synchronized (segment) {
+            if (segment.containsKey(key) && Objects.equals(segment.get(key), value)) {
+                segment.remove(key);
+                return true;
+            }
+            return false;
+        }
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        Objects.requireNonNull(key, "key");
+        WeakIdentityHashMap<K, V> segment = this.getSegment(key);
+        synchronized (segment) {
+            if (segment.containsKey(key) && Objects.equals(segment.get(key), oldValue)) {
+                segment.put(key, newValue);
+                return true;
+            }
+            return false;
+        }
+    }
+
+    @Override
+    public V replace(K key, V value) {
+        Objects.requireNonNull(key, "key");
+        WeakIdentityHashMap<K, V> segment = this.getSegment(key);
+        synchronized (segment) {
+            if (segment.containsKey(key)) {
+                return segment.put(key, value);
+            }
+            return null;
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (WeakIdentityHashMap<K, V> segment : this.segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        Set<Map.Entry<K, V>> entrySet = this.entrySet;
+        if (entrySet == null) {
+            this.entrySet = entrySet = new EntrySet();
+        }
+        return entrySet;
+    }
+
+    private WeakIdentityHashMap<K, V> getSegment(Object key) {
+        int hash = System.identityHashCode(key);
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        return this.segments[(hash >>> 24) & this.segmentMask];
+    }
+
+    private class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator() {
+            List<SnapshotEntry> snapshot = new ArrayList<>();
+            for (WeakIdentityHashMap<K, V> segment : ConcurrentWeakIdentityHashMap.this.segments) {
+                synchronized (segment) {
+                    for (Map.Entry<K, V> entry : segment.entrySet()) {
+                        snapshot.add(new SnapshotEntry(entry.getKey(), entry.getValue()));
+                    }
+                }
+            }
+            return new Iterator<Map.Entry<K, V>>() {
+                private int index;
+                private SnapshotEntry lastReturned;
+
+                @Override
+                public boolean hasNext() {
+                    return this.index < snapshot.size();
+                }
+
+                @Override
+                public Map.Entry<K, V> next() {
+                    if (!this.hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return this.lastReturned = snapshot.get(this.index++);
+                }
+
+                @Override
+                public void remove() {
+                    if (this.lastReturned == null) {
+                        throw new IllegalStateException();
+                    }
+                    ConcurrentWeakIdentityHashMap.this.remove(this.lastReturned.getKey(), this.lastReturned.getValue());
+                    this.lastReturned = null;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return ConcurrentWeakIdentityHashMap.this.size();
+        }
+
+        @Override
+        public void clear() {
+            ConcurrentWeakIdentityHashMap.this.clear();
+        }
+    }
+
+    private class SnapshotEntry extends AbstractMap.SimpleEntry<K, V> {
+        private SnapshotEntry(K key, V value) {
+            super(key, value);
+        }
+
+        @Override
+        public V setValue(V value) {
+            ConcurrentWeakIdentityHashMap.this.put(this.getKey(), value);
+            return super.setValue(value);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> entry = (Map.Entry<?, ?>) obj;
+            return this.getKey() == entry.getKey() && Objects.equals(this.getValue(), entry.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this.getKey()) ^ Objects.hashCode(this.getValue());
+        }
+    }
+}
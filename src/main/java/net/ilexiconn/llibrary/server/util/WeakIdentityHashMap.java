@@ -1,254 +1,349 @@
 package net.ilexiconn.llibrary.server.util;
 
-import java.lang.ref.Reference;
 import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
-import java.util.AbstractCollection;
+import java.util.AbstractMap;
 import java.util.AbstractSet;
-import java.util.Collection;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.Set;
 
 /**
- *
- * Generic implementation of com.sun.jna.WeakIdentityHashMap
+ * Map with weakly referenced keys, compared by identity. Lookups don't allocate, and entries of collected keys are
+ * only expunged by modifying operations and {@link #size()}. This map is not thread-safe, use
+ * {@link ConcurrentWeakIdentityHashMap} for concurrent access. Null keys are not supported.
  *
  * @author pau101
  */
-public class WeakIdentityHashMap<K, V> implements Map<K, V> {
-    private final ReferenceQueue<K> queue = new ReferenceQueue();
-
-    private final Map<IdentityWeakReference, V> delegate;
+public class WeakIdentityHashMap<K, V> extends AbstractMap<K, V> {
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+    private static final float DEFAULT_LOAD_FACTOR = 0.75F;
+
+    private final ReferenceQueue<Object> queue = new ReferenceQueue<>();
+    private final float loadFactor;
+    private WeakEntry<K, V>[] table;
+    private int size;
+    private int threshold;
+    private int modCount;
+    private Set<Map.Entry<K, V>> entrySet;
 
     public WeakIdentityHashMap(int expectedMaxSize, float loadFactor) {
-        delegate = new HashMap<>(expectedMaxSize, loadFactor);
+        if (expectedMaxSize < 0) {
+            throw new IllegalArgumentException("Illegal size: " + expectedMaxSize);
+        }
+        if (loadFactor <= 0 || Float.isNaN(loadFactor)) {
+            throw new IllegalArgumentException("Illegal load factor: " + loadFactor);
+        }
+        this.loadFactor = loadFactor;
+        int capacity = 1;
+        int minCapacity = (int) Math.min(MAXIMUM_CAPACITY, expectedMaxSize / loadFactor + 1);
+        while (capacity < minCapacity) {
+            capacity <<= 1;
+        }
+        this.table = WeakIdentityHashMap.newTable(capacity);
+        this.threshold = (int) (capacity * loadFactor);
     }
 
     public WeakIdentityHashMap(int expectedMaxSize) {
-        delegate = new HashMap<>(expectedMaxSize);
+        this(expectedMaxSize, DEFAULT_LOAD_FACTOR);
     }
 
     public WeakIdentityHashMap() {
-        delegate = new HashMap<>();
+        this((int) (DEFAULT_CAPACITY * DEFAULT_LOAD_FACTOR), DEFAULT_LOAD_FACTOR);
     }
 
     @Override
     public int size() {
-        reap();
-        return delegate.size();
+        this.reap();
+        return this.size;
     }
 
     @Override
     public boolean isEmpty() {
-        reap();
-        return delegate.isEmpty();
+        return this.size() == 0;
     }
 
     @Override
     public boolean containsKey(Object key) {
-        reap();
-        return delegate.containsKey(new IdentityWeakReference((K) key));
-    }
-
-    @Override
-    public boolean containsValue(Object value) {
-        reap();
-        return delegate.containsValue(value);
+        return this.getEntry(key) != null;
     }
 
     @Override
     public V get(Object key) {
-        reap();
-        return delegate.get(new IdentityWeakReference((K) key));
+        WeakEntry<K, V> entry = this.getEntry(key);
+        return entry != null ? entry.value : null;
     }
 
     @Override
     public V put(K key, V value) {
-        return delegate.put(new IdentityWeakReference(key), value);
+        Objects.requireNonNull(key, "key");
+        this.reap();
+        int hash = WeakIdentityHashMap.hash(key);
+        WeakEntry<K, V>[] table = this.table;
+        int index = hash & (table.length - 1);
+        for (WeakEntry<K, V> entry = table[index]; entry != null; entry = entry.next) {
+            if (entry.hash == hash && entry.get() == key) {
+                V previous = entry.value;
+                entry.value = value;
+                return previous;
+            }
+        }
+        table[index] = new WeakEntry<>(key, value, hash, table[index], this.queue);
+        this.modCount++;
+        if (++this.size > this.threshold) {
+            this.resize();
+        }
+        return null;
     }
 
     @Override
     public V remove(Object key) {
-        reap();
-        return delegate.remove(new IdentityWeakReference((K) key));
-    }
-
-    @Override
-    public void putAll(Map<? extends K, ? extends V> m) {
-        for (Entry<? extends K, ? extends V> e : m.entrySet()) {
-            put(e.getKey(), e.getValue());
+        if (key == null) {
+            return null;
+        }
+        this.reap();
+        WeakEntry<K, V> entry = this.getEntry(key);
+        if (entry != null && this.unlink(entry)) {
+            this.modCount++;
+            return entry.value;
         }
+        return null;
     }
 
     @Override
     public void clear() {
-        delegate.clear();
-        reap();
+        while (this.queue.poll() != null) {
+        }
+        Arrays.fill(this.table, null);
+        this.size = 0;
+        this.modCount++;
+        while (this.queue.poll() != null) {
+        }
     }
 
     @Override
-    public Set<K> keySet() {
-        reap();
-        return new AbstractSet<K>() {
-            @Override
-            public int size() {
-                reap();
-                return delegate.size();
-            }
+    public Set<Map.Entry<K, V>> entrySet() {
+        Set<Map.Entry<K, V>> entrySet = this.entrySet;
+        if (entrySet == null) {
+            this.entrySet = entrySet = new EntrySet();
+        }
+        return entrySet;
+    }
 
-            @Override
-            public Iterator<K> iterator() {
-                reap();
-                Iterator<IdentityWeakReference> iter = delegate.keySet().iterator();
-                return new Iterator<K>() {
-                    @Override
-                    public boolean hasNext() {
-                        return iter.hasNext();
-                    }
-
-                    @Override
-                    public K next() {
-                        return iter.next().get();
-                    }
-
-                    @Override
-                    public void remove() {
-                        iter.remove();
-                    }
-                };
+    private WeakEntry<K, V> getEntry(Object key) {
+        if (key == null) {
+            return null;
+        }
+        int hash = WeakIdentityHashMap.hash(key);
+        WeakEntry<K, V>[] table = this.table;
+        for (WeakEntry<K, V> entry = table[hash & (table.length - 1)]; entry != null; entry = entry.next) {
+            if (entry.hash == hash && entry.get() == key) {
+                return entry;
             }
+        }
+        return null;
+    }
 
-            @Override
-            public void clear() {
-                delegate.clear();
-                reap();
+    private boolean unlink(WeakEntry<?, ?> target) {
+        WeakEntry<K, V>[] table = this.table;
+        int index = target.hash & (table.length - 1);
+        WeakEntry<K, V> previous = null;
+        for (WeakEntry<K, V> entry = table[index]; entry != null; entry = entry.next) {
+            if (entry == target) {
+                if (previous == null) {
+                    table[index] = entry.next;
+                } else {
+                    previous.next = entry.next;
+                }
+                this.size--;
+                return true;
             }
-        };
+            previous = entry;
+        }
+        return false;
     }
 
-    @Override
-    public Collection<V> values() {
-        return new AbstractCollection<V>() {
-            @Override
-            public int size() {
-                reap();
-                return delegate.size();
+    private void reap() {
+        Object reference;
+        while ((reference = this.queue.poll()) != null) {
+            WeakEntry<?, ?> entry = (WeakEntry<?, ?>) reference;
+            if (this.unlink(entry)) {
+                entry.value = null;
             }
+        }
+    }
 
-            @Override
-            public boolean contains(Object o) {
-                reap();
-                return containsValue(o);
+    private void resize() {
+        WeakEntry<K, V>[] oldTable = this.table;
+        if (oldTable.length >= MAXIMUM_CAPACITY) {
+            this.threshold = Integer.MAX_VALUE;
+            return;
+        }
+        WeakEntry<K, V>[] newTable = WeakIdentityHashMap.newTable(oldTable.length << 1);
+        int mask = newTable.length - 1;
+        for (WeakEntry<K, V> head : oldTable) {
+            WeakEntry<K, V> entry = head;
+            while (entry != null) {
+                WeakEntry<K, V> next = entry.next;
+                if (entry.get() == null) {
+                    entry.value = null;
+                    this.size--;
+                } else {
+                    int index = entry.hash & mask;
+                    entry.next = newTable[index];
+                    newTable[index] = entry;
+                }
+                entry = next;
             }
+        }
+        this.table = newTable;
+        this.threshold = (int) (newTable.length * this.loadFactor);
+    }
 
-            @Override
-            public Iterator<V> iterator() {
-                reap();
-                return delegate.values().iterator();
-            }
+    private static int hash(Object key) {
+        int hash = System.identityHashCode(key);
+        return hash ^ (hash >>> 16);
+    }
 
-            @Override
-            public void clear() {
-                delegate.clear();
-                reap();
-            }
-        };
+    @SuppressWarnings("unchecked")
+    private static <K, V> WeakEntry<K, V>[] newTable(int capacity) {
+        return (WeakEntry<K, V>[]) new WeakEntry[capacity];
     }
 
-    @Override
-    public Set<Entry<K, V>> entrySet() {
-        reap();
-        return new AbstractSet<Entry<K, V>>() {
-            @Override
-            public int size() {
-                reap();
-                return delegate.size();
-            }
+    private static class WeakEntry<K, V> extends WeakReference<K> implements Map.Entry<K, V> {
+        private final int hash;
+        private V value;
+        private WeakEntry<K, V> next;
+
+        private WeakEntry(K key, V value, int hash, WeakEntry<K, V> next, ReferenceQueue<Object> queue) {
+            super(key, queue);
+            this.value = value;
+            this.hash = hash;
+            this.next = next;
+        }
 
-            @Override
-            public Iterator<Entry<K, V>> iterator() {
-                reap();
-                Iterator<Entry<IdentityWeakReference, V>> iter = delegate.entrySet().iterator();
-                return new Iterator<Entry<K, V>>() {
-                    @Override
-                    public boolean hasNext() {
-                        return iter.hasNext();
-                    }
-
-                    @Override
-                    public Entry<K, V> next() {
-                        Entry<IdentityWeakReference, V> entry = iter.next();
-                        return new Entry<K, V>() {
-                            @Override
-                            public K getKey() {
-                                return entry.getKey().get();
-                            }
-
-                            @Override
-                            public V getValue() {
-                                return entry.getValue();
-                            }
-
-                            @Override
-                            public V setValue(V value) {
-                                return delegate.put(entry.getKey(), value);
-                            }
-                        };
-                    }
-
-                    @Override
-                    public void remove() {
-                        iter.remove();
-                    }
-                };
-            }
+        @Override
+        public K getKey() {
+            return this.get();
+        }
+
+        @Override
+        public V getValue() {
+            return this.value;
+        }
 
-            @Override
-            public void clear() {
-                delegate.clear();
-                reap();
+        @Override
+        public V setValue(V value) {
+            V previous = this.value;
+            this.value = value;
+            return previous;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Map.Entry)) {
+                return false;
             }
-        };
-    }
+            Map.Entry<?, ?> entry = (Map.Entry<?, ?>) obj;
+            return this.get() == entry.getKey() && Objects.equals(this.value, entry.getValue());
+        }
 
-    @Override
-    public String toString() {
-        reap();
-        return delegate.toString();
-    }
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this.get()) ^ Objects.hashCode(this.value);
+        }
 
-    private synchronized void reap() {
-        Reference<? extends K> zombie = queue.poll();
-        while (zombie != null) {
-            IdentityWeakReference victim = (IdentityWeakReference) zombie;
-            delegate.remove(victim);
-            zombie = queue.poll();
+        @Override
+        public String toString() {
+            return this.get() + "=" + this.value;
         }
     }
 
-    private class IdentityWeakReference extends WeakReference<K> {
-        private final int hash;
+    private class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator() {
+            return new EntryIterator();
+        }
 
-        public IdentityWeakReference(K obj) {
-            super(obj, queue);
-            hash = System.identityHashCode(obj);
+        @Override
+        public int size() {
+            return WeakIdentityHashMap.this.size();
         }
 
         @Override
-        public int hashCode() {
-            return hash;
+        public void clear() {
+            WeakIdentityHashMap.this.clear();
         }
+    }
+
+    private class EntryIterator implements Iterator<Map.Entry<K, V>> {
+        private final WeakEntry<K, V>[] table = WeakIdentityHashMap.this.table;
+        private int index = this.table.length;
+        private WeakEntry<K, V> entry;
+        private WeakEntry<K, V> lastReturned;
+        private int expectedModCount = WeakIdentityHashMap.this.modCount;
+        /**
+         * Strong references to the next and current key, so they can't be collected while iterating
+         */
+        private K nextKey;
+        private K currentKey;
 
         @Override
-        public boolean equals(Object obj) {
-            return this == obj || ((IdentityWeakReference) obj).get() == get();
+        public boolean hasNext() {
+            while (this.nextKey == null) {
+                WeakEntry<K, V> entry = this.entry;
+                int index = this.index;
+                while (entry == null && index > 0) {
+                    entry = this.table[--index];
+                }
+                this.entry = entry;
+                this.index = index;
+                if (entry == null) {
+                    this.currentKey = null;
+                    return false;
+                }
+                this.nextKey = entry.get();
+                if (this.nextKey == null) {
+                    this.entry = entry.next;
+                }
+            }
+            return true;
         }
 
         @Override
-        public String toString() {
-            return String.valueOf(get());
+        public Map.Entry<K, V> next() {
+            if (WeakIdentityHashMap.this.modCount != this.expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            this.lastReturned = this.entry;
+            this.entry = this.entry.next;
+            this.currentKey = this.nextKey;
+            this.nextKey = null;
+            return this.lastReturned;
+        }
+
+        @Override
+        public void remove() {
+            if (this.lastReturned == null) {
+                throw new IllegalStateException();
+            }
+            if (WeakIdentityHashMap.this.modCount != this.expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (WeakIdentityHashMap.this.unlink(this.lastReturned)) {
+                WeakIdentityHashMap.this.modCount++;
+            }
+            this.expectedModCount = WeakIdentityHashMap.this.modCount;
+            this.lastReturned = null;
+            this.currentKey = null;
         }
     }
 }
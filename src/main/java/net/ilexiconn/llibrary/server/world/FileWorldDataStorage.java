@@ -0,0 +1,67 @@
+package net.ilexiconn.llibrary.server.world;
+
+import net.minecraft.nbt.CompressedStreamTools;
+import net.minecraft.nbt.NBTTagCompound;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Stores every key as its own gzipped file. Files are written to a temporary file and synced to disk first, and only
+ * then moved over the old file, so a crash or power loss while writing never corrupts existing data.
+ *
+ * @since 1.6.0
+ */
+public class FileWorldDataStorage implements IWorldDataStorage {
+    private static final int BUFFER_SIZE = 65536;
+
+    private final File folder;
+
+    public FileWorldDataStorage(File folder) {
+        this.folder = folder;
+    }
+
+    @Override
+    public NBTTagCompound read(String key) throws IOException {
+        File file = this.getFile(key);
+        if (!file.exists()) {
+            return null;
+        }
+        try (InputStream inputStream = new FileInputStream(file)) {
+            return CompressedStreamTools.readCompressed(inputStream);
+        }
+    }
+
+    @Override
+    public void write(String key, byte[] data) throws IOException {
+        if (!this.folder.exists()) {
+            this.folder.mkdirs();
+        }
+        File file = this.getFile(key);
+        File tempFile = new File(this.folder, file.getName() + ".tmp");
+        try (FileOutputStream fileStream = new FileOutputStream(tempFile);
+             GZIPOutputStream outputStream = new GZIPOutputStream(new BufferedOutputStream(fileStream, BUFFER_SIZE), BUFFER_SIZE)) {
+            outputStream.write(data);
+            outputStream.finish();
+            outputStream.flush();
+            fileStream.getFD().sync();
+        }
+        try {
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    public File getFile(String key) {
+        return new File(this.folder, key + ".dat");
+    }
+}
@@ -30,4 +30,26 @@ public interface IWorldDataAdapter {
      * @param world    the world instance
      */
     void saveNBTData(NBTTagCompound compound, World world);
+
+    /**
+     * Whether this adapter has changed since it was last saved. Clean adapters are not saved at all, dirty adapters are
+     * only rewritten if their saved data differs from the file. Defaults to always dirty. Adapters saved through
+     * {@link net.ilexiconn.llibrary.server.nbt.NBTChangeTracker#save(NBTTagCompound)} can return
+     * {@link net.ilexiconn.llibrary.server.nbt.NBTChangeTracker#isDirty()}.
+     *
+     * @return true if this adapter should be saved
+     * @since 1.6.0
+     */
+    default boolean isDirty() {
+        return true;
+    }
+
+    /**
+     * Called after the data of this adapter has been saved and queued for writing, adapters that track changes should
+     * clear their dirty state here. If writing fails, the adapter is saved again on the next save, even if it's clean.
+     *
+     * @since 1.6.0
+     */
+    default void onSaved() {
+    }
 }
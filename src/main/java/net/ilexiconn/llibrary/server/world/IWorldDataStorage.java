@@ -0,0 +1,39 @@
+package net.ilexiconn.llibrary.server.world;
+
+import net.minecraft.nbt.NBTTagCompound;
+
+import java.io.IOException;
+
+/**
+ * Storage backend for world data, mapping string keys to compounds. Implementations must be thread-safe.
+ *
+ * @since 1.6.0
+ */
+public interface IWorldDataStorage {
+    /**
+     * Read the compound stored under the given key. May be called from any thread, including concurrently with other
+     * reads and with writes on the world data save thread, so implementations must be thread-safe.
+     *
+     * @param key the key
+     * @return the stored compound, or null if nothing is stored under this key
+     * @throws IOException if the data could not be read
+     */
+    NBTTagCompound read(String key) throws IOException;
+
+    /**
+     * Store data under the given key, replacing any previous data. Called from the world data save thread.
+     *
+     * @param key  the key
+     * @param data the uncompressed, serialized compound
+     * @throws IOException if the data could not be written
+     */
+    void write(String key, byte[] data) throws IOException;
+
+    /**
+     * Release all resources held by this storage. Called from the world data save thread once all writes have finished.
+     *
+     * @throws IOException if the storage could not be closed
+     */
+    default void close() throws IOException {
+    }
+}
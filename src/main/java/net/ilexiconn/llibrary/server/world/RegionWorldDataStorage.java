@@ -0,0 +1,362 @@
+package net.ilexiconn.llibrary.server.world;
+
+import net.minecraft.nbt.CompressedStreamTools;
+import net.minecraft.nbt.NBTTagCompound;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UTFDataFormatException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Region style container, storing many small compounds in a single file. The file starts with a memory mapped slot
+ * table, followed by sectors holding the records. Every record holds its key and gzipped compound. Updated records are
+ * written to free sectors and forced to disk before their slot is switched over, and the old sectors are only reused
+ * once the updated slot table has been forced to disk too. When all slots are in use the slot table is doubled in size,
+ * moving the records stored in the sectors it grows into. Thread-safe.
+ * <p>
+ * Closing the storage releases the mapped slot table where the JVM allows it. Otherwise the mapping, and on Windows
+ * the lock on the file, are only released once the buffer has been garbage collected.
+ *
+ * @since 1.6.0
+ */
+public class RegionWorldDataStorage implements IWorldDataStorage {
+    private static final int MAGIC = 0x4C4C5247;
+    private static final int VERSION = 1;
+    private static final int SECTOR_SIZE = 512;
+    private static final int HEADER_SIZE = 16;
+    private static final int DEFAULT_SLOT_COUNT = 8192;
+    private static final int MIN_SLOT_COUNT = 64;
+    private static final int MAX_SLOT_COUNT = 1 << 24;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private MappedByteBuffer table;
+    private int slotCount;
+    private int tableSectors;
+    private final Map<String, Integer> slots = new HashMap<>();
+    private final BitSet usedSectors = new BitSet();
+    private final BitSet usedSlots = new BitSet();
+    private boolean closed;
+
+    public RegionWorldDataStorage(File file) throws IOException {
+        this(file, DEFAULT_SLOT_COUNT);
+    }
+
+    /**
+     * @param file      the region file
+     * @param slotCount the initial amount of records the slot table can hold, only used when a new file is created
+     * @throws IOException if the file could not be opened, or is not a valid region file
+     */
+    public RegionWorldDataStorage(File file, int slotCount) throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+        this.file = new RandomAccessFile(file, "rw");
+        this.channel = this.file.getChannel();
+        try {
+            if (this.channel.size() < HEADER_SIZE) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC).putInt(VERSION).putInt(slotCount).flip();
+                this.writeFully(header, 0);
+                this.slotCount = slotCount;
+            } else {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                this.readFully(header, 0);
+                header.flip();
+                if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                    throw new IOException("Invalid region file " + file.getName());
+                }
+                this.slotCount = header.getInt();
+                if (this.slotCount < 0 || this.slotCount > MAX_SLOT_COUNT) {
+                    throw new IOException("Invalid slot count in region file " + file.getName());
+                }
+            }
+            this.tableSectors = RegionWorldDataStorage.getSectorCount(HEADER_SIZE + this.slotCount * 8);
+            if (this.channel.size() < (long) this.tableSectors * SECTOR_SIZE) {
+                this.file.setLength((long) this.tableSectors * SECTOR_SIZE);
+            }
+            this.table = this.channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE, this.slotCount * 8L);
+            this.usedSectors.set(0, this.tableSectors);
+            this.loadSlots();
+        } catch (IOException e) {
+            this.file.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public NBTTagCompound read(String key) throws IOException {
+        byte[] record;
+        synchronized (this) {
+            this.ensureOpen();
+            Integer slot = this.slots.get(key);
+            if (slot == null) {
+                return null;
+            }
+            long entry = this.table.getLong(slot * 8);
+            ByteBuffer buffer = ByteBuffer.allocate(RegionWorldDataStorage.getLength(entry));
+            this.readFully(buffer, (long) RegionWorldDataStorage.getSector(entry) * SECTOR_SIZE);
+            record = buffer.array();
+        }
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(record));
+        input.readUTF();
+        return CompressedStreamTools.readCompressed(input);
+    }
+
+    @Override
+    public void write(String key, byte[] data) throws IOException {
+        ByteArrayOutputStream byteStream = new ByteArrayOutputStream(data.length / 2 + 64);
+        DataOutputStream output = new DataOutputStream(byteStream);
+        output.writeUTF(key);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(output)) {
+            gzip.write(data);
+        }
+        byte[] record = byteStream.toByteArray();
+        int sectorCount = RegionWorldDataStorage.getSectorCount(record.length);
+        synchronized (this) {
+            this.ensureOpen();
+            Integer slot = this.slots.get(key);
+            if (slot == null) {
+                slot = this.usedSlots.nextClearBit(0);
+                if (slot >= this.slotCount) {
+                    this.growTable(key);
+                }
+            }
+            int sector = this.allocate(sectorCount);
+            this.writeFully(ByteBuffer.wrap(record), (long) sector * SECTOR_SIZE);
+            this.channel.force(false);
+            long previous = this.table.getLong(slot * 8);
+            this.table.putLong(slot * 8, (long) sector << 32 | record.length);
+            this.table.force();
+            if (previous != 0) {
+                this.free(previous);
+            }
+            this.slots.put(key, slot);
+            this.usedSlots.set(slot);
+        }
+    }
+
+    /**
+     * Remove the record stored under the given key.
+     *
+     * @param key the key
+     * @throws IOException if the storage is closed, or the slot table could not be written
+     */
+    public synchronized void remove(String key) throws IOException {
+        this.ensureOpen();
+        Integer slot = this.slots.remove(key);
+        if (slot != null) {
+            long previous = this.table.getLong(slot * 8);
+            this.table.putLong(slot * 8, 0L);
+            this.table.force();
+            this.free(previous);
+            this.usedSlots.clear(slot);
+        }
+    }
+
+    public synchronized boolean contains(String key) {
+        return this.slots.containsKey(key);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        try {
+            this.table.force();
+            this.channel.force(true);
+        } finally {
+            this.file.close();
+            RegionWorldDataStorage.unmap(this.table);
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (this.closed) {
+            throw new IOException("Region file is closed");
+        }
+    }
+
+    /**
+     * Release the mapping right away, instead of waiting for the buffer to be garbage collected. Only possible on JVMs
+     * that expose the buffer's cleaner, on others this does nothing.
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        try {
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner != null) {
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        } catch (ReflectiveOperationException | RuntimeException ignored) {
+
+        }
+    }
+
+    /**
+     * Double the size of the slot table. Records stored in the sectors the table grows into are moved to free sectors
+     * first, and the new slots are cleared before the header is updated, so the file stays valid if the game crashes
+     * halfway.
+     */
+    private void growTable(String key) throws IOException {
+        if (this.slotCount >= MAX_SLOT_COUNT) {
+            throw new IOException("Region file is full, can't store " + key);
+        }
+        int newSlotCount = Math.min(Math.max(this.slotCount * 2, MIN_SLOT_COUNT), MAX_SLOT_COUNT);
+        int newTableSectors = RegionWorldDataStorage.getSectorCount(HEADER_SIZE + newSlotCount * 8);
+        this.usedSectors.set(this.tableSectors, newTableSectors);
+        List<long[]> moved = new ArrayList<>();
+        for (int slot = this.usedSlots.nextSetBit(0); slot >= 0; slot = this.usedSlots.nextSetBit(slot + 1)) {
+            long entry = this.table.getLong(slot * 8);
+            int sector = RegionWorldDataStorage.getSector(entry);
+            if (sector < newTableSectors) {
+                int length = RegionWorldDataStorage.getLength(entry);
+                ByteBuffer record = ByteBuffer.allocate(length);
+                this.readFully(record, (long) sector * SECTOR_SIZE);
+                record.flip();
+                int newSector = this.allocate(RegionWorldDataStorage.getSectorCount(length));
+                this.writeFully(record, (long) newSector * SECTOR_SIZE);
+                moved.add(new long[] { slot, (long) newSector << 32 | length, entry });
+            }
+        }
+        if (!moved.isEmpty()) {
+            this.channel.force(false);
+            for (long[] move : moved) {
+                this.table.putLong((int) move[0] * 8, move[1]);
+            }
+            this.table.force();
+            for (long[] move : moved) {
+                int sector = RegionWorldDataStorage.getSector(move[2]);
+                int end = sector + RegionWorldDataStorage.getSectorCount(RegionWorldDataStorage.getLength(move[2]));
+                if (end > newTableSectors) {
+                    this.usedSectors.clear(newTableSectors, end);
+                }
+            }
+        }
+        if (this.channel.size() < (long) newTableSectors * SECTOR_SIZE) {
+            this.file.setLength((long) newTableSectors * SECTOR_SIZE);
+        }
+        this.writeFully(ByteBuffer.allocate((newSlotCount - this.slotCount) * 8), HEADER_SIZE + this.slotCount * 8L);
+        this.channel.force(false);
+        ByteBuffer header = ByteBuffer.allocate(4);
+        header.putInt(newSlotCount).flip();
+        this.writeFully(header, 8);
+        this.channel.force(false);
+        MappedByteBuffer oldTable = this.table;
+        this.table = this.channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE, newSlotCount * 8L);
+        RegionWorldDataStorage.unmap(oldTable);
+        this.slotCount = newSlotCount;
+        this.tableSectors = newTableSectors;
+    }
+
+    private void loadSlots() throws IOException {
+        for (int slot = 0; slot < this.slotCount; slot++) {
+            long entry = this.table.getLong(slot * 8);
+            if (entry == 0) {
+                continue;
+            }
+            String key = this.readKey(entry);
+            if (key == null || this.slots.containsKey(key)) {
+                this.table.putLong(slot * 8, 0L);
+                continue;
+            }
+            int sector = RegionWorldDataStorage.getSector(entry);
+            this.slots.put(key, slot);
+            this.usedSlots.set(slot);
+            this.usedSectors.set(sector, sector + RegionWorldDataStorage.getSectorCount(RegionWorldDataStorage.getLength(entry)));
+        }
+    }
+
+    /**
+     * @return the key of the record the slot table entry points to, or null if the entry is corrupted: it points
+     * outside of the file, into the slot table or into sectors used by another record, or its key can't be read
+     */
+    private String readKey(long entry) throws IOException {
+        int sector = RegionWorldDataStorage.getSector(entry);
+        int length = RegionWorldDataStorage.getLength(entry);
+        if (length <= 2 || sector < this.tableSectors || (long) sector * SECTOR_SIZE + length > this.channel.size()) {
+            return null;
+        }
+        int usedSector = this.usedSectors.nextSetBit(sector);
+        if (usedSector != -1 && usedSector < sector + RegionWorldDataStorage.getSectorCount(length)) {
+            return null;
+        }
+        ByteBuffer keyLength = ByteBuffer.allocate(2);
+        this.readFully(keyLength, (long) sector * SECTOR_SIZE);
+        int keySize = 2 + (keyLength.getShort(0) & 0xFFFF);
+        if (keySize > length) {
+            return null;
+        }
+        ByteBuffer key = ByteBuffer.allocate(keySize);
+        this.readFully(key, (long) sector * SECTOR_SIZE);
+        try {
+            return new DataInputStream(new ByteArrayInputStream(key.array())).readUTF();
+        } catch (UTFDataFormatException e) {
+            return null;
+        }
+    }
+
+    private int allocate(int sectorCount) {
+        int start = this.usedSectors.nextClearBit(this.tableSectors);
+        while (true) {
+            int end = this.usedSectors.nextSetBit(start);
+            if (end == -1 || end - start >= sectorCount) {
+                this.usedSectors.set(start, start + sectorCount);
+                return start;
+            }
+            start = this.usedSectors.nextClearBit(end);
+        }
+    }
+
+    private void free(long entry) {
+        int sector = RegionWorldDataStorage.getSector(entry);
+        this.usedSectors.clear(sector, sector + RegionWorldDataStorage.getSectorCount(RegionWorldDataStorage.getLength(entry)));
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = this.channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of region file");
+            }
+            position += read;
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += this.channel.write(buffer, position);
+        }
+    }
+
+    private static int getSector(long entry) {
+        return (int) (entry >>> 32);
+    }
+
+    private static int getLength(long entry) {
+        return (int) entry;
+    }
+
+    private static int getSectorCount(int length) {
+        return (length + SECTOR_SIZE - 1) / SECTOR_SIZE;
+    }
+}
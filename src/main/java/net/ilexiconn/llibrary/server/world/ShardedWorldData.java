@@ -0,0 +1,141 @@
+package net.ilexiconn.llibrary.server.world;
+
+import net.ilexiconn.llibrary.LLibrary;
+import net.minecraft.crash.CrashReport;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.world.ChunkCoordIntPair;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * World data split into shards, addressed by two coordinates, for example region or chunk coordinates. Shards are
+ * loaded when they're first accessed, and only dirty shards are saved. Get an instance from
+ * {@link WorldDataHandler#getShardedData(net.minecraft.world.World, String)}. Must only be used from the server thread.
+ *
+ * @since 1.6.0
+ */
+public class ShardedWorldData {
+    private final String id;
+    private final File folder;
+    private final IWorldDataStorage storage;
+    private final Map<Long, NBTTagCompound> shards = new HashMap<>();
+    private final Set<Long> dirtyShards = new HashSet<>();
+    /**
+     * Serialized shards that have been queued for writing, but haven't been written yet
+     */
+    private final Map<String, byte[]> pendingWrites = new ConcurrentHashMap<>();
+
+    ShardedWorldData(String id, File folder, IWorldDataStorage storage) {
+        this.id = id;
+        this.folder = folder;
+        this.storage = storage;
+    }
+
+    public String getID() {
+        return this.id;
+    }
+
+    /**
+     * Get a shard, loading it from storage if it isn't loaded yet. Changes to the returned compound are only saved
+     * after {@link #markDirty(int, int)} has been called.
+     *
+     * @param x the x coordinate of the shard
+     * @param z the z coordinate of the shard
+     * @return the shard compound, empty if the shard doesn't exist yet
+     */
+    public NBTTagCompound getShard(int x, int z) {
+        long key = ChunkCoordIntPair.chunkXZ2Int(x, z);
+        NBTTagCompound shard = this.shards.get(key);
+        if (shard == null) {
+            String name = ShardedWorldData.getShardName(x, z);
+            try {
+                byte[] pending = this.pendingWrites.get(name);
+                if (pending != null) {
+                    shard = WorldDataHandler.deserialize(pending);
+                    this.dirtyShards.add(key);
+                } else {
+                    shard = this.storage.read(name);
+                }
+            } catch (IOException e) {
+                LLibrary.LOGGER.error(CrashReport.makeCrashReport(e, "Failed to read shard " + name + " of " + this.id).getCompleteReport());
+            }
+            if (shard == null) {
+                shard = new NBTTagCompound();
+            }
+            this.shards.put(key, shard);
+        }
+        return shard;
+    }
+
+    public boolean isShardLoaded(int x, int z) {
+        return this.shards.containsKey(ChunkCoordIntPair.chunkXZ2Int(x, z));
+    }
+
+    public int getLoadedShardCount() {
+        return this.shards.size();
+    }
+
+    /**
+     * Mark a loaded shard as changed, so it's written on the next save.
+     *
+     * @param x the x coordinate of the shard
+     * @param z the z coordinate of the shard
+     */
+    public void markDirty(int x, int z) {
+        long key = ChunkCoordIntPair.chunkXZ2Int(x, z);
+        if (this.shards.containsKey(key)) {
+            this.dirtyShards.add(key);
+        }
+    }
+
+    /**
+     * Unload a shard, saving it first if it's dirty.
+     *
+     * @param x the x coordinate of the shard
+     * @param z the z coordinate of the shard
+     */
+    public void unloadShard(int x, int z) {
+        long key = ChunkCoordIntPair.chunkXZ2Int(x, z);
+        NBTTagCompound shard = this.shards.remove(key);
+        if (shard != null && this.dirtyShards.remove(key)) {
+            this.saveShard(x, z, shard);
+        }
+    }
+
+    void save() {
+        Iterator<Long> iterator = this.dirtyShards.iterator();
+        while (iterator.hasNext()) {
+            long key = iterator.next();
+            this.saveShard((int) key, (int) (key >>> 32), this.shards.get(key));
+            iterator.remove();
+        }
+    }
+
+    void close() {
+        this.save();
+        this.shards.clear();
+        WorldDataHandler.INSTANCE.closeStorage(this.folder, this.storage);
+    }
+
+    private void saveShard(int x, int z, NBTTagCompound shard) {
+        String name = ShardedWorldData.getShardName(x, z);
+        try {
+            byte[] data = WorldDataHandler.serialize(shard);
+            this.pendingWrites.put(name, data);
+            WorldDataHandler.INSTANCE.queueWrite(this.storage, name, data, () -> this.pendingWrites.remove(name, data), null);
+        } catch (IOException e) {
+            LLibrary.LOGGER.error(CrashReport.makeCrashReport(e, "Failed to write shard " + name + " of " + this.id).getCompleteReport());
+        }
+    }
+
+    private static String getShardName(int x, int z) {
+        return x + "." + z;
+    }
+}
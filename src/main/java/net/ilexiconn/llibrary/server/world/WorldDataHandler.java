@@ -1,20 +1,38 @@
 package net.ilexiconn.llibrary.server.world;
 
 import net.ilexiconn.llibrary.LLibrary;
+import net.ilexiconn.llibrary.server.util.ExceptionlessFunctions;
+import net.ilexiconn.llibrary.server.util.WeakIdentityHashMap;
 import net.minecraft.crash.CrashReport;
 import net.minecraft.nbt.CompressedStreamTools;
 import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.util.ReportedException;
 import net.minecraft.world.World;
 import net.minecraft.world.chunk.storage.AnvilChunkLoader;
 import net.minecraft.world.chunk.storage.IChunkLoader;
 import net.minecraft.world.storage.ISaveHandler;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
 
 /**
  * @author iLexiconn
@@ -23,7 +41,46 @@ import java.util.List;
 public enum WorldDataHandler {
     INSTANCE;
 
+    private static final int SAVE_QUEUE_CAPACITY = 64;
+
     private List<IWorldDataAdapter> dataAdapterList = new ArrayList<>();
+    /**
+     * Compresses and writes snapshotted data off the server thread, in the order it was queued. Once the queue is full,
+     * the calling thread blocks until there's space again.
+     */
+    private final ExecutorService saveExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(SAVE_QUEUE_CAPACITY), runnable -> {
+        Thread thread = new Thread(runnable, "LLibrary World Data Saver");
+        thread.setDaemon(true);
+        return thread;
+    }, (runnable, executor) -> {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                executor.getQueue().put(runnable);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    });
+    private final Object pendingLock = new Object();
+    private int pendingTasks;
+    /**
+     * Checksums of the last data written to each file, used to skip rewriting unchanged data
+     */
+    private final Map<File, Long> savedChecksums = new ConcurrentHashMap<>();
+    /**
+     * Files whose last write failed, these are saved again even if their adapter is clean
+     */
+    private final Set<File> failedWrites = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private final Map<World, Map<String, ShardedWorldData>> shardedDataMap = new WeakIdentityHashMap<>();
+    /**
+     * Storages that have been queued to be closed, by data folder, completed once they are closed
+     */
+    private final Map<File, CompletableFuture<Void>> pendingCloses = new ConcurrentHashMap<>();
 
     /**
      * Register a world data adapter.
@@ -34,48 +91,238 @@ public enum WorldDataHandler {
         this.dataAdapterList.add(dataAdapter);
     }
 
+    /**
+     * Loads the data of all adapters. Files are read and parsed in parallel if enabled in the config, but the data is
+     * always passed to the adapters on the calling thread, in registration order.
+     *
+     * @param saveHandler the save handler of the world
+     * @param world       the world instance
+     */
     public void loadWorldData(ISaveHandler saveHandler, World world) {
         if (world.provider.dimensionId == 0) {
-            for (IWorldDataAdapter dataAdapter : this.dataAdapterList) {
-                File dataFile = new File(this.getSaveFolder(saveHandler, world), dataAdapter.getID() + ".dat");
-                if (dataFile.exists()) {
-                    try {
-                        FileInputStream inputStream = new FileInputStream(dataFile);
-                        dataAdapter.loadNBTData(CompressedStreamTools.readCompressed(inputStream), world);
-                        inputStream.close();
-                    } catch (IOException e) {
-                        LLibrary.LOGGER.error(CrashReport.makeCrashReport(e, "Failed to read file " + dataFile.getName()).getCompleteReport());
+            this.flush();
+            FileWorldDataStorage storage = new FileWorldDataStorage(this.getSaveFolder(saveHandler, world));
+            boolean parallel = LLibrary.CONFIG.isParallelWorldDataLoading();
+            List<CompletableFuture<NBTTagCompound>> compounds = new ArrayList<>();
+            if (parallel) {
+                for (IWorldDataAdapter dataAdapter : this.dataAdapterList) {
+                    compounds.add(CompletableFuture.supplyAsync(() -> {
+                        try {
+                            return storage.read(dataAdapter.getID());
+                        } catch (IOException e) {
+                            throw new CompletionException(e);
+                        }
+                    }, ForkJoinPool.commonPool()));
+                }
+            }
+            for (int i = 0; i < this.dataAdapterList.size(); i++) {
+                IWorldDataAdapter dataAdapter = this.dataAdapterList.get(i);
+                File dataFile = storage.getFile(dataAdapter.getID());
+                try {
+                    NBTTagCompound compound = parallel ? compounds.get(i).join() : storage.read(dataAdapter.getID());
+                    if (compound != null) {
+                        dataAdapter.loadNBTData(compound, world);
                     }
+                } catch (IOException e) {
+                    LLibrary.LOGGER.error(CrashReport.makeCrashReport(e, "Failed to read file " + dataFile.getName()).getCompleteReport());
+                } catch (CompletionException e) {
+                    LLibrary.LOGGER.error(CrashReport.makeCrashReport(e.getCause(), "Failed to read file " + dataFile.getName()).getCompleteReport());
                 }
             }
         }
     }
 
+    /**
+     * Snapshots the data of all dirty adapters on the calling thread, and queues the snapshots that differ from the
+     * last saved data to be compressed and written in the background. Each file is written to a temporary file first,
+     * and then moved over the old file.
+     *
+     * @param saveHandler the save handler of the world
+     * @param world       the world instance
+     */
     public void saveWorldData(ISaveHandler saveHandler, World world) {
         if (world.provider.dimensionId == 0) {
+            FileWorldDataStorage storage = new FileWorldDataStorage(this.getSaveFolder(saveHandler, world));
             for (IWorldDataAdapter dataAdapter : this.dataAdapterList) {
-                File dataFile = new File(this.getSaveFolder(saveHandler, world), dataAdapter.getID() + ".dat");
-                if (!dataFile.exists()) {
-                    try {
-                        dataFile.createNewFile();
-                    } catch (IOException e) {
-                        LLibrary.LOGGER.error(CrashReport.makeCrashReport(e, "Failed to create file " + dataFile.getName()).getCompleteReport());
-                        continue;
-                    }
+                File dataFile = storage.getFile(dataAdapter.getID());
+                if (!dataAdapter.isDirty() && !this.failedWrites.contains(dataFile) && dataFile.exists()) {
+                    continue;
+                }
+                NBTTagCompound compound = new NBTTagCompound();
+                dataAdapter.saveNBTData(compound, world);
+                byte[] data;
+                try {
+                    data = WorldDataHandler.serialize(compound);
+                } catch (IOException e) {
+                    LLibrary.LOGGER.error(CrashReport.makeCrashReport(e, "Failed to write file " + dataFile.getName()).getCompleteReport());
+                    continue;
+                }
+                dataAdapter.onSaved();
+                long checksum = WorldDataHandler.checksum(data);
+                Long previous = this.savedChecksums.put(dataFile, checksum);
+                if (previous == null || previous != checksum || !dataFile.exists()) {
+                    this.failedWrites.remove(dataFile);
+                    this.queueWrite(storage, dataAdapter.getID(), data, null, () -> {
+                        this.savedChecksums.remove(dataFile, checksum);
+                        this.failedWrites.add(dataFile);
+                    });
+                }
+            }
+        }
+        Map<String, ShardedWorldData> shardedData = this.shardedDataMap.get(world);
+        if (shardedData != null) {
+            for (ShardedWorldData data : shardedData.values()) {
+                data.save();
+            }
+        }
+    }
 
-                    NBTTagCompound compound = new NBTTagCompound();
-                    dataAdapter.saveNBTData(compound, world);
+    /**
+     * Get the sharded data with the given ID for a world, creating it if it doesn't exist yet. Sharded data is
+     * available in all dimensions, and is saved together with the world. Every shard is stored as its own file.
+     *
+     * @param world the server world instance
+     * @param id    the data id, used as folder name
+     * @return the sharded data
+     * @since 1.6.0
+     */
+    public ShardedWorldData getShardedData(World world, String id) {
+        return this.getShardedData(world, id, FileWorldDataStorage::new);
+    }
 
-                    try {
-                        FileOutputStream outputStream = new FileOutputStream(dataFile);
-                        CompressedStreamTools.writeCompressed(compound, outputStream);
-                        outputStream.close();
-                    } catch (IOException e) {
-                        LLibrary.LOGGER.error(CrashReport.makeCrashReport(e, "Failed to write file " + dataFile.getName()).getCompleteReport());
-                    }
+    /**
+     * Get the sharded data with the given ID for a world, creating it if it doesn't exist yet. The storage factory is
+     * only used when the data is created, for example {@code folder -> new RegionWorldDataStorage(new File(folder,
+     * "data.region"))} stores all shards in a single region file.
+     *
+     * @param world          the server world instance
+     * @param id             the data id, used as folder name
+     * @param storageFactory creates the storage backend from the data folder
+     * @return the sharded data
+     * @since 1.6.0
+     */
+    public ShardedWorldData getShardedData(World world, String id, ExceptionlessFunctions.ThrowingFunction<File, IWorldDataStorage, IOException> storageFactory) {
+        if (world.isRemote) {
+            throw new IllegalArgumentException("Sharded world data is only available on the server");
+        }
+        Map<String, ShardedWorldData> shardedData = this.shardedDataMap.computeIfAbsent(world, w -> new HashMap<>());
+        ShardedWorldData data = shardedData.get(id);
+        if (data == null) {
+            File folder = new File(this.getSaveFolder(world.getSaveHandler(), world), id);
+            CompletableFuture<Void> closing = this.pendingCloses.get(folder);
+            if (closing != null) {
+                closing.join();
+            }
+            try {
+                data = new ShardedWorldData(id, folder, storageFactory.apply(folder));
+            } catch (IOException e) {
+                throw new ReportedException(CrashReport.makeCrashReport(e, "Opening world data storage " + id));
+            }
+            shardedData.put(id, data);
+        }
+        return data;
+    }
+
+    /**
+     * Save and release all sharded data of a world.
+     *
+     * @param world the world instance
+     * @since 1.6.0
+     */
+    public void unloadWorldData(World world) {
+        Map<String, ShardedWorldData> shardedData = this.shardedDataMap.remove(world);
+        if (shardedData != null) {
+            for (ShardedWorldData data : shardedData.values()) {
+                data.close();
+            }
+        }
+    }
+
+    /**
+     * Blocks until all queued world data has been written.
+     */
+    public void flush() {
+        synchronized (this.pendingLock) {
+            boolean interrupted = false;
+            while (this.pendingTasks > 0) {
+                try {
+                    this.pendingLock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    void queueWrite(IWorldDataStorage storage, String key, byte[] data, Runnable onSuccess, Runnable onFailure) {
+        this.execute(() -> {
+            try {
+                storage.write(key, data);
+                if (onSuccess != null) {
+                    onSuccess.run();
+                }
+            } catch (IOException e) {
+                if (onFailure != null) {
+                    onFailure.run();
                 }
+                LLibrary.LOGGER.error(CrashReport.makeCrashReport(e, "Failed to write world data " + key).getCompleteReport());
+            }
+        });
+    }
+
+    /**
+     * Queue a storage to be closed once all writes queued before have finished. Until then, opening a storage for the
+     * same folder blocks.
+     */
+    void closeStorage(File folder, IWorldDataStorage storage) {
+        CompletableFuture<Void> closed = new CompletableFuture<>();
+        this.pendingCloses.put(folder, closed);
+        this.execute(() -> {
+            try {
+                storage.close();
+            } catch (IOException e) {
+                LLibrary.LOGGER.error("Failed to close world data storage", e);
+            } finally {
+                this.pendingCloses.remove(folder, closed);
+                closed.complete(null);
             }
+        });
+    }
+
+    private void execute(Runnable task) {
+        synchronized (this.pendingLock) {
+            this.pendingTasks++;
         }
+        this.saveExecutor.execute(() -> {
+            try {
+                task.run();
+            } finally {
+                synchronized (this.pendingLock) {
+                    if (--this.pendingTasks == 0) {
+                        this.pendingLock.notifyAll();
+                    }
+                }
+            }
+        });
+    }
+
+    static byte[] serialize(NBTTagCompound compound) throws IOException {
+        ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
+        CompressedStreamTools.write(compound, new DataOutputStream(byteStream));
+        return byteStream.toByteArray();
+    }
+
+    static NBTTagCompound deserialize(byte[] data) throws IOException {
+        return CompressedStreamTools.read(new DataInputStream(new ByteArrayInputStream(data)));
+    }
+
+    private static long checksum(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length);
+        return (long) data.length << 32 | crc.getValue();
     }
 
     private File getSaveFolder(ISaveHandler saveHandler, World world) {